@@ -0,0 +1,129 @@
+package net.trajano.mojo.m2ecodestyle.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.trajano.mojo.m2ecodestyle.internal.EolNormalizingStream;
+
+/**
+ * Compares writing through {@link EolNormalizingStream} one byte at a time
+ * with writing the whole buffer at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3,
+    time = 1)
+@Measurement(iterations = 5,
+    time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EolNormalizingStreamBenchmark {
+
+    /**
+     * Output stream that only counts the bytes written to it.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        /**
+         * Number of bytes written.
+         */
+        private long count;
+
+        @Override
+        public void write(final byte[] b,
+            final int off,
+            final int len) {
+
+            count += len;
+        }
+
+        @Override
+        public void write(final int b) {
+
+            ++count;
+        }
+    }
+
+    /**
+     * Input data.
+     */
+    private byte[] input;
+
+    /**
+     * Size of the input in bytes.
+     */
+    @Param({
+        "1048576",
+        "8388608"
+    })
+    private int size;
+
+    /**
+     * Generates Java like source with a mix of CRLF and LF line endings.
+     */
+    @Setup
+    public void setUp() {
+
+        final StringBuilder b = new StringBuilder(size + 128);
+        int line = 0;
+        while (b.length() < size) {
+            b.append("        final String value").append(line).append(" = \"line ").append(line).append("\";");
+            b.append(line % 2 == 0 ? "\r\n" : "\n");
+            ++line;
+        }
+        input = b.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the input in one call.
+     *
+     * @param blackhole
+     *            blackhole
+     * @throws IOException
+     *             I/O error
+     */
+    @Benchmark
+    public void bulk(final Blackhole blackhole) throws IOException {
+
+        final CountingOutputStream out = new CountingOutputStream();
+        try (final EolNormalizingStream eol = new EolNormalizingStream(out, "\n")) {
+            eol.write(input, 0, input.length);
+        }
+        blackhole.consume(out.count);
+    }
+
+    /**
+     * Writes the input one byte at a time.
+     *
+     * @param blackhole
+     *            blackhole
+     * @throws IOException
+     *             I/O error
+     */
+    @Benchmark
+    public void singleByte(final Blackhole blackhole) throws IOException {
+
+        final CountingOutputStream out = new CountingOutputStream();
+        try (final EolNormalizingStream eol = new EolNormalizingStream(out, "\n")) {
+            for (final byte b : input) {
+                eol.write(b);
+            }
+        }
+        blackhole.consume(out.count);
+    }
+}
@@ -0,0 +1,106 @@
+package net.trajano.mojo.m2ecodestyle.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.formatter.CodeFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.trajano.mojo.m2ecodestyle.CheckMojo;
+
+/**
+ * Measures formatting a single synthetic file. The file is formatted through
+ * {@link CheckMojo} as it uses the same code path as the format goal without
+ * writing the result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3,
+    time = 2)
+@Measurement(iterations = 5,
+    time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatFileBenchmark {
+
+    /**
+     * Code formatter.
+     */
+    private CodeFormatter codeFormatter;
+
+    /**
+     * Generated source file.
+     */
+    private File file;
+
+    /**
+     * Mojo doing the formatting.
+     */
+    private CheckMojo mojo;
+
+    /**
+     * Approximate size of the compilation unit in characters. Roughly a small
+     * class, a large class and a generated parser.
+     */
+    @Param({
+        "2000",
+        "50000",
+        "1000000"
+    })
+    private int size;
+
+    /**
+     * Formats the generated file.
+     *
+     * @param blackhole
+     *            blackhole
+     * @throws MojoFailureException
+     *             formatting failed
+     */
+    @Benchmark
+    public void formatFile(final Blackhole blackhole) throws MojoFailureException {
+
+        blackhole.consume(mojo.formatFile(file, codeFormatter));
+    }
+
+    /**
+     * Writes the synthetic source and creates the formatter.
+     *
+     * @throws IOException
+     *             I/O error
+     */
+    @Setup
+    public void setUp() throws IOException {
+
+        file = File.createTempFile("Synthetic", ".java");
+        Files.write(file.toPath(), SyntheticSource.generate(file.getName().replace(".java", ""), size).getBytes(Charset.defaultCharset()));
+        codeFormatter = ToolFactory.createCodeFormatter(FormatterBenchmark.readProfile());
+        mojo = new CheckMojo();
+    }
+
+    /**
+     * Removes the synthetic source.
+     */
+    @TearDown
+    public void tearDown() {
+
+        file.delete();
+    }
+}
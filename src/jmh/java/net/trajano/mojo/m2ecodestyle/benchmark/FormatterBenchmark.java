@@ -0,0 +1,84 @@
+package net.trajano.mojo.m2ecodestyle.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.formatter.CodeFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.trajano.mojo.m2ecodestyle.internal.ProfileReader;
+
+/**
+ * Measures reading the formatter profile XML and creating the
+ * {@link CodeFormatter} from it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3,
+    time = 2)
+@Measurement(iterations = 5,
+    time = 2)
+@Fork(1)
+public class FormatterBenchmark {
+
+    /**
+     * Formatter profile used by the benchmarks.
+     */
+    private static final String PROFILE_XML = "/formatter/java-code-formatter.xml";
+
+    /**
+     * Reads the formatter profile.
+     *
+     * @return formatter options
+     * @throws IOException
+     *             I/O error
+     */
+    static Map<Object, Object> readProfile() throws IOException {
+
+        final Properties options = new Properties();
+        try (final InputStream xmlStream = FormatterBenchmark.class.getResourceAsStream(PROFILE_XML)) {
+            ProfileReader.read(xmlStream, null, options);
+        }
+        options.put(JavaCore.COMPILER_SOURCE, "1.8");
+        options.put(JavaCore.COMPILER_COMPLIANCE, "1.8");
+        options.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, "1.8");
+        return options;
+    }
+
+    /**
+     * Reads the profile and creates a code formatter.
+     *
+     * @return code formatter
+     * @throws IOException
+     *             I/O error
+     */
+    @Benchmark
+    public CodeFormatter buildFormatter() throws IOException {
+
+        return ToolFactory.createCodeFormatter(readProfile());
+    }
+
+    /**
+     * Reads the profile XML.
+     *
+     * @return formatter options
+     * @throws IOException
+     *             I/O error
+     */
+    @Benchmark
+    public Map<Object, Object> readProfileXml() throws IOException {
+
+        return readProfile();
+    }
+}
@@ -0,0 +1,44 @@
+package net.trajano.mojo.m2ecodestyle.benchmark;
+
+/**
+ * Generates badly formatted Java compilation units for the benchmarks. The
+ * output is deterministic so results can be compared between runs.
+ */
+final class SyntheticSource {
+
+    /**
+     * Generates a compilation unit of roughly the given size.
+     *
+     * @param className
+     *            class name
+     * @param size
+     *            approximate size in characters
+     * @return source code
+     */
+    static String generate(final String className,
+        final int size) {
+
+        final StringBuilder b = new StringBuilder(size + 1024);
+        b.append("package benchmark;\n\nimport java.util.List;\nimport java.util.ArrayList;\n\n");
+        b.append("/** Generated class. */\npublic class ").append(className).append(" {\n");
+        int i = 0;
+        while (b.length() < size) {
+            b.append("  private int field").append(i).append("=").append(i).append(";\n");
+            b.append("/**\n * Method ").append(i).append(" does things with its arguments and returns a value that is long enough to be wrapped by the formatter.\n*/\n");
+            b.append("public   List<String> method").append(i).append("(final int a,final String b,   final Object c){\n");
+            b.append("final List<String> ret=new ArrayList<>();\nfor(int j=0;j<a;++j){if(j%2==0){ret.add(b+j);}else{ret.add(String.valueOf(c));}}\n");
+            b.append("try{ret.add(String.format(\"%s-%d\",b,field").append(i).append("));}catch(final RuntimeException e){throw e;}\n");
+            b.append("return ret;}\r\n");
+            ++i;
+        }
+        b.append("}\n");
+        return b.toString();
+    }
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private SyntheticSource() {
+
+    }
+}
@@ -0,0 +1,1244 @@
+package net.trajano.mojo.m2ecodestyle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.DependencyResolutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectDependenciesResolver;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.formatter.CodeFormatter;
+import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+import net.trajano.mojo.m2ecodestyle.internal.AtomicFileWriter;
+import net.trajano.mojo.m2ecodestyle.internal.CodeFormatterCache;
+import net.trajano.mojo.m2ecodestyle.internal.FormatCache;
+import net.trajano.mojo.m2ecodestyle.internal.FormatMetrics;
+import net.trajano.mojo.m2ecodestyle.internal.FormatMetrics.Counter;
+import net.trajano.mojo.m2ecodestyle.internal.FormatMetrics.Phase;
+import net.trajano.mojo.m2ecodestyle.internal.FormatPipeline;
+import net.trajano.mojo.m2ecodestyle.internal.FormatterRegistry;
+import net.trajano.mojo.m2ecodestyle.internal.GitRepository;
+import net.trajano.mojo.m2ecodestyle.internal.JavaScriptFormatter;
+import net.trajano.mojo.m2ecodestyle.internal.PreferenceFileName;
+import net.trajano.mojo.m2ecodestyle.internal.ProfileReader;
+import net.trajano.mojo.m2ecodestyle.internal.ProjectClasspath;
+import net.trajano.mojo.m2ecodestyle.internal.ProjectCleanUp;
+import net.trajano.mojo.m2ecodestyle.internal.ShardManifest;
+
+/**
+ * Common processing for the goals that run the JDT formatter over the source
+ * files. The files are scanned, formatted in memory in parallel and the
+ * formatted content of the files that would change is passed on to
+ * {@link #formatted(File, byte[])}. JavaScript files are formatted the same way
+ * using the JSDT formatter if it has been added to the plugin dependencies.
+ */
+public abstract class AbstractFormatMojo extends AbstractMojo {
+
+    /**
+     * Extension of the Java source files.
+     */
+    private static final String JAVA_EXTENSION = "java";
+
+    /**
+     * Extension of the JavaScript source files.
+     */
+    private static final String JAVASCRIPT_EXTENSION = "js";
+
+    /**
+     * Build context.
+     */
+    @Component
+    private BuildContext buildContext;
+
+    /**
+     * IDs of the blobs of the files in the base revision when
+     * {@link #changedRegionsOnly} is set, keyed by file.
+     */
+    private Map<File, String> baseBlobIds;
+
+    /**
+     * <p>
+     * File that stores the content hashes of the files that have been
+     * formatted. Files whose content has not changed since they were last
+     * formatted are skipped.
+     * </p>
+     * <p>
+     * The cache is discarded when the formatter options or the JDT version
+     * change.
+     * </p>
+     */
+    @Parameter(defaultValue = "${project.build.directory}/m2e-codestyle/format.cache",
+        required = true)
+    private File cacheFile;
+
+    /**
+     * <p>
+     * Restricts the files that are processed to those that differ from the
+     * given git revision. This may be a branch, a tag, a commit ID or
+     * <code>HEAD</code> to only process files with uncommitted changes. Files
+     * that are not tracked in the revision are always processed.
+     * </p>
+     * <p>
+     * The git index, refs and objects are read directly so no git executable is
+     * required. If the project is not in a git work tree, all the files are
+     * processed.
+     * </p>
+     */
+    @Parameter(property = "codestyle.format.changedSince",
+        required = false)
+    private String changedSince;
+
+    /**
+     * <p>
+     * Only formats the lines that differ from the {@link #changedSince}
+     * revision, or <code>HEAD</code> if it is not set, rather than the whole
+     * file. This avoids large diffs when editing legacy files that were never
+     * formatted. Files that are not in the revision are formatted as a whole.
+     * </p>
+     * <p>
+     * The {@link #cacheFile} is not used in this mode as the result depends on
+     * the base revision.
+     * </p>
+     */
+    @Parameter(property = "codestyle.format.changedRegionsOnly",
+        defaultValue = "false")
+    private boolean changedRegionsOnly;
+
+    /**
+     * Class path of the project, resolved the first time imports are organized.
+     */
+    private ProjectClasspath classpath;
+
+    /**
+     * Clean up applied to Java files before formatting, <code>null</code> if
+     * {@link #javaCleanupProfileXmlUrl} is not set.
+     */
+    private ProjectCleanUp cleanUp;
+
+    /**
+     * <p>
+     * This is the URL that points to the base URL where the files are located.
+     * </p>
+     * <p>
+     * The URL <b>must</b> end with a trailing slash as the names referenced by
+     * {@link #buildOptionsFromConfiguration()} are resolved against it. If the
+     * trailing slash is missing, it will append it automatically and log a
+     * warning.
+     * </p>
+     * <p>
+     * If this is not an absolute URL, it assumes that the value passed in is
+     * referring to something in the classpath.
+     * </p>
+     * <p>
+     * If the value is not specified, then the default Java conventions would be
+     * used.
+     * </p>
+     */
+    @Parameter(required = false)
+    private String codeStyleBaseUrl;
+
+    /**
+     * Resolves the dependencies of the project. The goals do not require
+     * dependency resolution so it is only done when imports are organized.
+     */
+    @Component
+    private ProjectDependenciesResolver dependenciesResolver;
+
+    /**
+     * <p>
+     * This is the URL that points to the Java formatter profile XML. The
+     * contents of this will be merged into
+     * {@value net.trajano.mojo.m2ecodestyle.internal.PreferenceFileName#JDT_CORE}
+     * </p>
+     * <p>
+     * If this is not an absolute URL, it assumes that the value passed in is
+     * referring to something in the classpath.
+     * </p>
+     */
+    @Parameter(required = false,
+        property = "codestyle.java.formatter.xml")
+    private String javaFormatterProfileXmlUrl;
+
+    /**
+     * <p>
+     * This is the URL that points to the JavaScript formatter profile XML. The
+     * contents of this will be merged into the options from
+     * {@value net.trajano.mojo.m2ecodestyle.internal.PreferenceFileName#JSDT_CORE}.
+     * It is only used if the JSDT formatter is available.
+     * </p>
+     * <p>
+     * If this is not an absolute URL, it assumes that the value passed in is
+     * referring to something in the classpath.
+     * </p>
+     */
+    @Parameter(required = false,
+        property = "codestyle.javascript.formatter.xml")
+    private String javaScriptFormatterProfileXmlUrl;
+
+    /**
+     * <p>
+     * This is the URL that points to the Java clean up profile XML. When it is
+     * set, the clean up actions of the profile are applied before the files are
+     * formatted. Only the actions that do not need the project to be compiled
+     * are supported: organizing imports, removing unused imports and making
+     * parameters and local variables final.
+     * </p>
+     * <p>
+     * Imports are organized using an index of the types in the source roots of
+     * the project and of the reactor projects it depends on, its class path and
+     * the JDK. Main sources do not see the test sources and test scope
+     * dependencies. The index of each jar is stored under
+     * <code>.cache/m2e-codestyle/symbols</code> in the local repository so it
+     * is only built once.
+     * </p>
+     * <p>
+     * If this is not an absolute URL, it assumes that the value passed in is
+     * referring to something in the classpath.
+     * </p>
+     */
+    @Parameter(required = false,
+        property = "codestyle.java.cleanup.xml")
+    private String javaCleanupProfileXmlUrl;
+
+    /**
+     * Name of the profile to use when {@link #javaCleanupProfileXmlUrl}
+     * contains more than one. If this is not set, the first profile is used.
+     */
+    @Parameter(required = false,
+        property = "codestyle.java.cleanup.profile")
+    private String javaCleanupProfileName;
+
+    /**
+     * Name of the profile to use when {@link #javaFormatterProfileXmlUrl}
+     * contains more than one. If this is not set, the first profile is used.
+     */
+    @Parameter(required = false,
+        property = "codestyle.java.formatter.profile")
+    private String javaFormatterProfileName;
+
+    /**
+     * Encoding of the source files. If this is not set, the platform encoding
+     * is used.
+     */
+    @Parameter(property = "codestyle.encoding",
+        defaultValue = "${project.build.sourceEncoding}")
+    private String encoding;
+
+    /**
+     * Patterns of the files to leave out, relative to each source root.
+     */
+    @Parameter(required = false)
+    private String[] excludes;
+
+    /**
+     * Processes the source roots that are inside the build directory when
+     * {@link #useCompileSourceRoots} is set. These are usually generated by
+     * other plugins, e.g. <code>target/generated-sources</code>, so they are
+     * skipped by default.
+     */
+    @Parameter(property = "codestyle.format.includeGeneratedSources",
+        defaultValue = "false")
+    private boolean includeGeneratedSources;
+
+    /**
+     * Patterns of the files to process, relative to each source root. Defaults
+     * to <code>**&#47;*.java</code>, and <code>**&#47;*.js</code> if the JSDT
+     * formatter is available.
+     */
+    @Parameter(required = false)
+    private String[] includes;
+
+    /**
+     * What to do with files that exceed {@link #maxFileSize} or
+     * {@link #timeout}.
+     */
+    @Parameter(property = "codestyle.format.limitPolicy",
+        defaultValue = "WARN")
+    private LimitPolicy limitPolicy = LimitPolicy.WARN;
+
+    /**
+     * Files larger than this number of bytes are not formatted and handled
+     * according to {@link #limitPolicy}. If this is less than 1, there is no
+     * limit.
+     */
+    @Parameter(property = "codestyle.format.maxFileSize",
+        defaultValue = "0")
+    private long maxFileSize;
+
+    /**
+     * Metrics of the current run.
+     */
+    private FormatMetrics metrics = new FormatMetrics(0);
+
+    /**
+     * <p>
+     * Report file for the timings and counters collected while formatting. The
+     * report is written as CSV if the file name ends with <code>.csv</code> and
+     * as JSON otherwise. If this is not set, the metrics are only logged.
+     * </p>
+     * <p>
+     * Times are summed over all the {@link #threads}.
+     * </p>
+     */
+    @Parameter(property = "codestyle.format.metricsReport",
+        required = false)
+    private File metricsReport;
+
+    /**
+     * Formats the files of the current run. It is kept once the run is complete
+     * so that {@link WatchMojo} can carry on using it.
+     */
+    private FormatPipeline pipeline;
+
+    /**
+     * The Maven Project.
+     */
+    @Parameter(defaultValue = "${project}",
+        readonly = true)
+    private MavenProject project;
+
+    /**
+     * Git repository that the base blobs are read from when
+     * {@link #changedRegionsOnly} is set.
+     */
+    private GitRepository repository;
+
+    /**
+     * Injected property retrieval component.
+     */
+    @Component
+    private Retrieval retrieval;
+
+    /**
+     * The Maven session. The formatter options built for a configuration are
+     * shared by all the modules in the session.
+     */
+    @Parameter(defaultValue = "${session}",
+        readonly = true)
+    private MavenSession session;
+
+    /**
+     * Skips the use of the {@link #cacheFile} so every file gets formatted.
+     */
+    @Parameter(property = "codestyle.format.skipCache",
+        defaultValue = "false")
+    private boolean skipCache;
+
+    /**
+     * <p>
+     * Number of shards the files are split into, so that several machines can
+     * each process part of a large module. Every file goes to exactly one shard
+     * based on the hash of its path relative to the project base directory.
+     * </p>
+     * <p>
+     * When there is more than one shard, each shard writes a
+     * {@link #shardManifest} that the <code>merge</code> goal combines into a
+     * single verdict.
+     * </p>
+     */
+    @Parameter(property = "codestyle.shard.count",
+        defaultValue = "1")
+    private int shardCount;
+
+    /**
+     * Index of the shard to process, from 0 to {@link #shardCount} - 1.
+     */
+    @Parameter(property = "codestyle.shard.index",
+        defaultValue = "0")
+    private int shardIndex;
+
+    /**
+     * JSON manifest of the files the shard changed or flagged. Defaults to
+     * <code>m2e-codestyle/shard-</code><i>index</i><code>.json</code> in the
+     * build directory when {@link #shardCount} is more than one. If it is set,
+     * the manifest is written even if there is a single shard.
+     */
+    @Parameter(property = "codestyle.shard.manifest",
+        required = false)
+    private File shardManifest;
+
+    @Parameter(property = "maven.compiler.source",
+        defaultValue = "1.5")
+    private String source;
+
+    @Parameter(property = "maven.compiler.target",
+        defaultValue = "1.5")
+    private String target;
+
+    /**
+     * <p>
+     * Number of threads used to format the files. Each thread gets its own
+     * {@link CodeFormatter} built from the same options as the JDT formatter is
+     * not thread-safe.
+     * </p>
+     * <p>
+     * If this is less than 1, the number of available processors is used.
+     * </p>
+     */
+    @Parameter(property = "codestyle.format.threads",
+        defaultValue = "0")
+    private int threads;
+
+    /**
+     * <p>
+     * Maximum number of seconds the formatter may spend on a single file. Files
+     * that take longer are handled according to {@link #limitPolicy} and the
+     * other files carry on being processed. If this is less than 1, there is no
+     * limit.
+     * </p>
+     * <p>
+     * The clean up and the JDT formatter cannot be stopped, so they run on a
+     * separate daemon thread that is abandoned when it times out. It keeps
+     * using a CPU until it completes on its own. While four abandoned threads
+     * are still running, the remaining files are handled as exceeding the
+     * timeout rather than starting more of them.
+     * </p>
+     */
+    @Parameter(property = "codestyle.format.timeout",
+        defaultValue = "0")
+    private int timeout;
+
+    /**
+     * Processes all the compile and test compile source roots of the project,
+     * including those added by other plugins such as
+     * <code>build-helper-maven-plugin</code>, rather than only the source and
+     * test source directories. Roots inside the build directory are skipped
+     * unless {@link #includeGeneratedSources} is set.
+     */
+    @Parameter(property = "codestyle.format.useCompileSourceRoots",
+        defaultValue = "false")
+    private boolean useCompileSourceRoots;
+
+    /**
+     * Number of the slowest files to list in the metrics summary.
+     */
+    @Parameter(property = "codestyle.format.slowestFiles",
+        defaultValue = "5")
+    private int slowestFiles;
+
+    @SuppressWarnings("unchecked")
+    public void addJavaCoreProperties(@SuppressWarnings("rawtypes") final Map options) {
+
+        final Plugin plugin = project.getPlugin("org.apache.maven.plugins:maven-compiler-plugin");
+        if (plugin == null) {
+            getLog().debug("Maven compiler plugin is not present, will use the default Java targets");
+        } else {
+            options.put(JavaCore.COMPILER_SOURCE, source);
+            options.put(JavaCore.COMPILER_COMPLIANCE, source);
+            options.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM,
+                target);
+        }
+
+    }
+
+    /**
+     * Builds the code formatter options. The options are used to create a
+     * {@link CodeFormatter} per worker thread.
+     *
+     * @return code formatter options
+     * @throws MojoExecutionException
+     *             wraps any error that has occurred when building the options.
+     */
+    private Map<?, ?> buildFormatterOptions() throws MojoExecutionException {
+
+        final Map<?, ?> options;
+        try {
+
+            if (isUseJavaConventions()) {
+                options = DefaultCodeFormatterConstants.getJavaConventionsSettings();
+                addJavaCoreProperties(options);
+            } else {
+
+                options = buildOptionsFromConfiguration();
+            }
+            addJavaCoreProperties(options);
+            return options;
+
+        } catch (final IOException
+            | URISyntaxException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates the formatter options from the configuration data provided.
+     *
+     * @return populated options
+     * @throws URISyntaxException
+     *             Problem with the URI syntax
+     * @throws IOException
+     *             I/O problem
+     * @throws MojoExecutionException
+     *             other wrapped Mojo issue
+     */
+    private Properties buildOptionsFromConfiguration() throws URISyntaxException,
+        IOException,
+        MojoExecutionException {
+
+        final Properties props = new Properties();
+
+        if (codeStyleBaseUrl != null) {
+            final URI codeStyleBaseUri = new URI(codeStyleBaseUrl);
+            final InputStream prefStream = retrieval.openPreferenceStream(codeStyleBaseUri, "org.eclipse.jdt.core.prefs");
+            if (prefStream == null) {
+                throw new MojoExecutionException("unable to retrieve org.eclipse.jdt.core.prefs from " + codeStyleBaseUri);
+            }
+            props.load(prefStream);
+            prefStream.close();
+        }
+
+        if (javaFormatterProfileXmlUrl != null) {
+
+            final InputStream xmlStream = retrieval.openStream(javaFormatterProfileXmlUrl);
+            if (xmlStream == null) {
+                throw new MojoExecutionException("unable to load " + javaFormatterProfileXmlUrl);
+            }
+            try {
+                ProfileReader.read(xmlStream, javaFormatterProfileName, props);
+            } finally {
+                xmlStream.close();
+            }
+
+        }
+        return props;
+    }
+
+    /**
+     * Builds the clean up from {@link #javaCleanupProfileXmlUrl}.
+     *
+     * @return clean up or <code>null</code> if there is no clean up profile or
+     *         it has no supported action enabled.
+     * @throws MojoExecutionException
+     *             wraps any error that has occurred when reading the profile.
+     */
+    private ProjectCleanUp buildCleanUp() throws MojoExecutionException {
+
+        if (javaCleanupProfileXmlUrl == null) {
+            return null;
+        }
+        final Properties settings = new Properties();
+        try (final InputStream xmlStream = retrieval.openStream(javaCleanupProfileXmlUrl)) {
+            if (xmlStream == null) {
+                throw new MojoExecutionException("unable to load " + javaCleanupProfileXmlUrl);
+            }
+            ProfileReader.read(xmlStream, javaCleanupProfileName, settings);
+        } catch (final IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        final ProjectCleanUp cleanUp;
+        try {
+            cleanUp = new ProjectCleanUp(settings, getCodeFormatterCache(JAVA_EXTENSION).getOptions(), project, session, getClasspath());
+        } catch (final DependencyResolutionException e) {
+            throw new MojoExecutionException("unable to resolve the class path to organize imports", e);
+        }
+        if (!cleanUp.isEnabled()) {
+            getLog().warn("No supported clean up action is enabled in " + javaCleanupProfileXmlUrl);
+            return null;
+        }
+        return cleanUp;
+    }
+
+    /**
+     * Creates the JavaScript formatter options from the configuration data
+     * provided. Unlike the Java options, there are no defaults to fall back on
+     * so a missing prefs file is not an error.
+     *
+     * @return populated options
+     * @throws MojoExecutionException
+     *             wraps any error that has occurred when building the options.
+     */
+    private Properties buildJavaScriptFormatterOptions() throws MojoExecutionException {
+
+        final Properties props = new Properties();
+        try {
+            if (codeStyleBaseUrl != null) {
+                try (final InputStream prefStream = retrieval.openPreferenceStream(new URI(codeStyleBaseUrl), PreferenceFileName.JSDT_CORE)) {
+                    if (prefStream != null) {
+                        props.load(prefStream);
+                    }
+                }
+            }
+            if (javaScriptFormatterProfileXmlUrl != null) {
+                try (final InputStream xmlStream = retrieval.openStream(javaScriptFormatterProfileXmlUrl)) {
+                    if (xmlStream == null) {
+                        throw new MojoExecutionException("unable to load " + javaScriptFormatterProfileXmlUrl);
+                    }
+                    ProfileReader.read(xmlStream, null, props);
+                }
+            }
+        } catch (final IOException
+            | URISyntaxException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        return props;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() throws MojoExecutionException,
+        MojoFailureException {
+
+        metrics = new FormatMetrics(slowestFiles);
+        cleanUp = buildCleanUp();
+        final long scanStart = System.nanoTime();
+        final List<File> files = selectShard(scanFiles());
+        metrics.addTime(Phase.SCAN, System.nanoTime() - scanStart);
+        metrics.add(Counter.SCANNED, files.size());
+        if (encoding != null && !Charset.isSupported(encoding)) {
+            throw new MojoExecutionException("unsupported encoding " + encoding);
+        }
+        pipeline = newPipeline();
+        if (files.isEmpty()) {
+            reportMetrics();
+            writeShardManifest(files, files, new MojoFailureException[0], true);
+            return;
+        }
+
+        if (encoding == null) {
+            getLog().warn("File encoding has not been set, using platform encoding " + Charset.defaultCharset() + ", i.e. build is platform dependent!");
+        }
+
+        final FormatterRegistry registry = getFormatterRegistry();
+        if (!skipCache && !changedRegionsOnly) {
+            final Map<String, Object> options = registry.getOptions();
+            if (cleanUp == null) {
+                options.put("cleanup:actions", "");
+            } else {
+                try {
+                    cleanUp.addFingerprint(options);
+                } catch (final DependencyResolutionException e) {
+                    throw new MojoExecutionException("unable to resolve the class path to organize imports", e);
+                }
+            }
+            pipeline.setFormatCache(FormatCache.load(cacheFile, FormatCache.fingerprint(options, getCharset())));
+        }
+
+        final int threadCount = Math.min(files.size(), threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        final MojoFailureException[] failures = new MojoFailureException[files.size()];
+        final boolean[] changed = new boolean[files.size()];
+        final AtomicInteger nextFile = new AtomicInteger();
+        final AtomicBoolean stop = new AtomicBoolean();
+        final Runnable worker = new Runnable() {
+
+            @Override
+            public void run() {
+
+                final FormatterRegistry.Lease lease = registry.lease();
+                try {
+                    for (int i = nextFile.getAndIncrement(); i < failures.length && !stop.get(); i = nextFile.getAndIncrement()) {
+                        final File file = files.get(i);
+                        final CodeFormatter codeFormatter = lease.get(file);
+                        if (codeFormatter == null) {
+                            getLog().debug("No formatter for " + file);
+                            continue;
+                        }
+                        try {
+                            changed[i] = formatFile(file, codeFormatter);
+                            if (changed[i] && isFailFast()) {
+                                stop.set(true);
+                            }
+                        } catch (final MojoFailureException e) {
+                            failures[i] = e;
+                        }
+                        discardIfTimedOut(lease, file, codeFormatter);
+                    }
+                } finally {
+                    lease.release();
+                }
+            }
+        };
+
+        try {
+            if (threadCount == 1) {
+                worker.run();
+            } else {
+                getLog().debug("Formatting " + files.size() + " files using " + threadCount + " threads");
+                runInParallel(worker, threadCount);
+            }
+        } finally {
+            shutdownFormatExecutor();
+            storeFormatCache();
+            reportMetrics();
+        }
+
+        final List<File> changedFiles = new ArrayList<>();
+        for (int i = 0; i < changed.length; ++i) {
+            if (changed[i]) {
+                changedFiles.add(files.get(i));
+            }
+        }
+        try {
+            throwFailures(failures);
+            summarize(files, changedFiles);
+        } catch (final MojoFailureException e) {
+            writeShardManifest(files, changedFiles, failures, false);
+            throw e;
+        }
+        writeShardManifest(files, changedFiles, failures, true);
+    }
+
+    /**
+     * Drops the code formatter from the lease if it timed out while formatting
+     * the file as it may still be running.
+     *
+     * @param lease
+     *            code formatters of the current thread
+     * @param file
+     *            file that was formatted
+     * @param codeFormatter
+     *            code formatter that was used
+     */
+    protected final void discardIfTimedOut(final FormatterRegistry.Lease lease,
+        final File file,
+        final CodeFormatter codeFormatter) {
+
+        if (pipeline != null) {
+            pipeline.discardIfTimedOut(lease, file, codeFormatter);
+        }
+    }
+
+    /**
+     * Called when the formatted content of the file differs from what is on
+     * disk.
+     *
+     * @param file
+     *            file that was formatted
+     * @param formattedContent
+     *            formatted content
+     * @throws IOException
+     *             I/O error
+     */
+    protected abstract void formatted(File file,
+        byte[] formattedContent) throws IOException;
+
+    /**
+     * Gets the cached formatter options for the current configuration, building
+     * them if this is the first module in the session to use the configuration.
+     *
+     * @param extension
+     *            {@link #JAVA_EXTENSION} or {@link #JAVASCRIPT_EXTENSION}
+     * @return cache entry
+     * @throws MojoExecutionException
+     *             wraps any error that has occurred when building the options.
+     */
+    private CodeFormatterCache getCodeFormatterCache(final String extension) throws MojoExecutionException {
+
+        final boolean javaScript = JAVASCRIPT_EXTENSION.equals(extension);
+        final String key = javaScript ? extension + "|" + codeStyleBaseUrl + "|" + javaScriptFormatterProfileXmlUrl : codeStyleBaseUrl + "|" + javaFormatterProfileXmlUrl + "|" + javaFormatterProfileName + "|" + source + "|" + target + "|" + (project.getPlugin("org.apache.maven.plugins:maven-compiler-plugin") != null);
+        final Object sessionKey = session == null ? null : session.getRequest();
+        CodeFormatterCache formatters = CodeFormatterCache.get(sessionKey, key);
+        if (formatters == null) {
+            formatters = javaScript ? CodeFormatterCache.put(key, buildJavaScriptFormatterOptions(), JavaScriptFormatter.FACTORY) : CodeFormatterCache.put(key, buildFormatterOptions());
+            getLog().debug("Formatter cache miss for " + key);
+        } else {
+            getLog().debug("Formatter cache hit for " + key);
+        }
+        getLog().debug(String.format("Formatter cache hits=%d, misses=%d", CodeFormatterCache.getHits(), CodeFormatterCache.getMisses()));
+        return formatters;
+    }
+
+    /**
+     * Gets the class path of the project. The dependencies are only resolved
+     * when they are first used.
+     *
+     * @return class path
+     */
+    private ProjectClasspath getClasspath() {
+
+        if (classpath == null) {
+            classpath = new ProjectClasspath(project, session, dependenciesResolver);
+        }
+        return classpath;
+    }
+
+    /**
+     * Gets the code formatters for the file extensions that are supported.
+     * JavaScript is supported if the JSDT formatter is available.
+     *
+     * @return formatter registry
+     * @throws MojoExecutionException
+     *             wraps any error that has occurred when building the options.
+     */
+    protected final FormatterRegistry getFormatterRegistry() throws MojoExecutionException {
+
+        final FormatterRegistry registry = new FormatterRegistry();
+        registry.register(JAVA_EXTENSION, getCodeFormatterCache(JAVA_EXTENSION));
+        if (JavaScriptFormatter.isAvailable()) {
+            registry.register(JAVASCRIPT_EXTENSION, getCodeFormatterCache(JAVASCRIPT_EXTENSION));
+        }
+        return registry;
+    }
+
+    /**
+     * Gets the include patterns.
+     *
+     * @return {@link #includes} or the default patterns if it is not set
+     */
+    private String[] getIncludes() {
+
+        if (includes != null && includes.length > 0) {
+            return includes;
+        }
+        if (JavaScriptFormatter.isAvailable()) {
+            return new String[] {
+                "**/*." + JAVA_EXTENSION,
+                "**/*." + JAVASCRIPT_EXTENSION
+            };
+        }
+        return new String[] {
+            "**/*." + JAVA_EXTENSION
+        };
+    }
+
+    /**
+     * Checks if the file matches the {@link #includes} and {@link #excludes}
+     * patterns.
+     *
+     * @param path
+     *            path of the file relative to its source root
+     * @return <code>true</code> if the file is to be processed
+     */
+    protected final boolean isIncluded(final String path) {
+
+        for (final String exclude : excludes == null ? new String[0] : excludes) {
+            if (SelectorUtils.matchPath(normalizePattern(exclude), path)) {
+                return false;
+            }
+        }
+        for (final String include : getIncludes()) {
+            if (SelectorUtils.matchPath(normalizePattern(include), path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if processing should stop after the first file that is not
+     * formatted. Defaults to <code>false</code>.
+     *
+     * @return <code>true</code> to stop at the first file that is not
+     *         formatted.
+     */
+    protected boolean isFailFast() {
+
+        return false;
+    }
+
+    /**
+     * Reports the outcome once all the files have been processed.
+     *
+     * @param files
+     *            files that were scanned
+     * @param changedFiles
+     *            files whose formatted content differed from what was on disk,
+     *            in scan order
+     * @throws MojoFailureException
+     *             to fail the build based on the outcome
+     */
+    protected abstract void summarize(List<File> files,
+        List<File> changedFiles) throws MojoFailureException;
+
+    /**
+     * Normalizes an include or exclude pattern the same way as the directory
+     * scanner does.
+     *
+     * @param pattern
+     *            pattern
+     * @return pattern using the platform file separator
+     */
+    private static String normalizePattern(final String pattern) {
+
+        final String normalized = pattern.trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        return normalized.endsWith(File.separator) ? normalized + "**" : normalized;
+    }
+
+    /**
+     * Writes the {@link #shardManifest} if there is more than one shard or it
+     * has been set.
+     *
+     * @param files
+     *            files of the shard
+     * @param changedFiles
+     *            files that were changed or are not formatted
+     * @param failures
+     *            failures indexed by the file position
+     * @param passed
+     *            whether the goal succeeded
+     * @throws MojoExecutionException
+     *             unable to write the manifest
+     */
+    private void writeShardManifest(final List<File> files,
+        final List<File> changedFiles,
+        final MojoFailureException[] failures,
+        final boolean passed) throws MojoExecutionException {
+
+        if (shardCount == 1 && shardManifest == null) {
+            return;
+        }
+        final List<String> changedPaths = new ArrayList<>(changedFiles.size());
+        for (final File file : changedFiles) {
+            changedPaths.add(relativePath(file));
+        }
+        final List<String> failurePaths = new ArrayList<>();
+        for (int i = 0; i < failures.length; ++i) {
+            if (failures[i] != null) {
+                failurePaths.add(relativePath(files.get(i)) + ": " + failures[i].getMessage());
+            }
+        }
+        final File file = shardManifest == null ? new File(project.getBuild().getDirectory(), "m2e-codestyle/shard-" + shardIndex + ".json") : shardManifest;
+        try {
+            new ShardManifest(project.getGroupId() + ":" + project.getArtifactId(), shardIndex, shardCount, files.size(), passed, changedPaths, failurePaths).write(file);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("unable to write shard manifest " + file, e);
+        }
+    }
+
+    /**
+     * Writes the content to the file through the build context.
+     *
+     * @param file
+     *            file to write
+     * @param content
+     *            content to write
+     * @throws IOException
+     *             I/O error
+     */
+    protected final void writeFile(final File file,
+        final byte[] content) throws IOException {
+
+        AtomicFileWriter.write(file, content, buildContext);
+    }
+
+    /**
+     * Runs the worker on multiple threads and waits for all of them to
+     * complete.
+     *
+     * @param worker
+     *            worker
+     * @param threadCount
+     *            number of threads
+     * @throws MojoExecutionException
+     *             unexpected error in a worker or interrupted while waiting.
+     */
+    private static void runInParallel(final Runnable worker,
+        final int threadCount) throws MojoExecutionException {
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<?>> futures = new ArrayList<>(threadCount);
+            for (int i = 0; i < threadCount; ++i) {
+                futures.add(executor.submit(worker));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final ExecutionException e) {
+            throw new MojoExecutionException(e.getCause().getMessage(), e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("interrupted while formatting", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the source roots to scan. These are the source and test source
+     * directories, or the compile and test compile source roots if
+     * {@link #useCompileSourceRoots} is set.
+     *
+     * @return existing source roots without duplicates
+     */
+    protected final Set<File> getSourceRoots() {
+
+        final List<String> roots = new ArrayList<>();
+        if (useCompileSourceRoots) {
+            roots.addAll(project.getCompileSourceRoots());
+            roots.addAll(project.getTestCompileSourceRoots());
+        } else {
+            roots.add(project.getBuild().getSourceDirectory());
+            roots.add(project.getBuild().getTestSourceDirectory());
+        }
+        final File buildDirectory = new File(project.getBuild().getDirectory()).getAbsoluteFile();
+        final Set<File> ret = new LinkedHashSet<>();
+        for (final String root : roots) {
+            final File dir = new File(root).getAbsoluteFile();
+            if (!dir.isDirectory()) {
+                continue;
+            }
+            if (useCompileSourceRoots && !includeGeneratedSources && dir.toPath().startsWith(buildDirectory.toPath())) {
+                getLog().debug("Skipping generated source root " + dir);
+                continue;
+            }
+            ret.add(dir);
+        }
+        return ret;
+    }
+
+    /**
+     * Scans the source roots for the files to format. If {@link #changedSince}
+     * or {@link #changedRegionsOnly} is set, only the files that differ from
+     * the base revision are returned.
+     *
+     * @return files to format
+     * @throws MojoExecutionException
+     *             unable to determine the changed files
+     */
+    private List<File> scanFiles() throws MojoExecutionException {
+
+        final List<File> files = new ArrayList<>();
+        for (final File dir : getSourceRoots()) {
+            final org.codehaus.plexus.util.Scanner scanner = buildContext.newScanner(dir, false);
+            scanner.setIncludes(getIncludes());
+            if (excludes != null) {
+                scanner.setExcludes(excludes);
+            }
+            scanner.scan();
+            for (final String includedFile : scanner.getIncludedFiles()) {
+                files.add(new File(scanner.getBasedir(), includedFile));
+            }
+        }
+        final String baseRevision = changedSince == null && changedRegionsOnly ? "HEAD" : changedSince;
+        if (baseRevision == null || files.isEmpty()) {
+            return files;
+        }
+        try {
+            repository = GitRepository.find(project.getBasedir());
+            if (repository == null) {
+                getLog().warn(project.getBasedir() + " is not in a git work tree, all files will be processed");
+                return files;
+            }
+            final Set<File> changedFiles = repository.changedFiles(baseRevision, files);
+            getLog().debug(changedFiles.size() + " of " + files.size() + " files differ from " + baseRevision);
+            if (changedRegionsOnly) {
+                baseBlobIds = repository.blobIds(baseRevision, changedFiles);
+            }
+            return new ArrayList<>(changedFiles);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("unable to determine files changed since " + baseRevision, e);
+        }
+    }
+
+    /**
+     * Logs the metrics summary and writes the {@link #metricsReport} if it is
+     * set. Failure to write the report is not fatal. The summary is only logged
+     * at info level when files were processed, otherwise it goes to debug so
+     * builds where everything is up to date stay quiet.
+     */
+    private void reportMetrics() {
+
+        final boolean processed = metrics.get(FormatMetrics.Counter.SCANNED) > metrics.get(FormatMetrics.Counter.SKIPPED);
+        for (final String line : metrics.summary()) {
+            if (processed) {
+                getLog().info(line);
+            } else {
+                getLog().debug(line);
+            }
+        }
+        if (metricsReport == null) {
+            return;
+        }
+        try {
+            metrics.writeReport(metricsReport);
+        } catch (final IOException e) {
+            getLog().warn("Unable to write metrics report " + metricsReport, e);
+        }
+    }
+
+    /**
+     * Creates a pipeline that formats the files using the current
+     * configuration. The formatted content is passed on to
+     * {@link #formatted(File, byte[])}.
+     *
+     * @return pipeline
+     */
+    private FormatPipeline newPipeline() {
+
+        final FormatPipeline newPipeline = new FormatPipeline(getCharset(), metrics, new FormatPipeline.Sink() {
+
+            @Override
+            public void formatted(final File file,
+                final byte[] formattedContent) throws IOException {
+
+                AbstractFormatMojo.this.formatted(file, formattedContent);
+            }
+        });
+        newPipeline.setCleanUp(cleanUp);
+        newPipeline.setLimits(maxFileSize, timeout, limitPolicy);
+        if (baseBlobIds != null) {
+            newPipeline.setChangedRegions(repository, baseBlobIds);
+        }
+        return newPipeline;
+    }
+
+    /**
+     * Gets the path of the file relative to the project base directory.
+     *
+     * @param file
+     *            file
+     * @return relative path using slashes
+     */
+    private String relativePath(final File file) {
+
+        return project.getBasedir().toPath().toAbsolutePath().relativize(file.toPath().toAbsolutePath()).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Keeps the files that belong to the {@link #shardIndex} shard.
+     *
+     * @param files
+     *            scanned files
+     * @return files of the shard
+     * @throws MojoExecutionException
+     *             the shard parameters are not valid
+     */
+    private List<File> selectShard(final List<File> files) throws MojoExecutionException {
+
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new MojoExecutionException(String.format("shard index %d is not between 0 and shard count %d - 1", shardIndex, shardCount));
+        }
+        if (shardCount == 1) {
+            return files;
+        }
+        final List<File> shard = new ArrayList<>();
+        for (final File file : files) {
+            if (ShardManifest.shardOf(relativePath(file), shardCount) == shardIndex) {
+                shard.add(file);
+            }
+        }
+        getLog().info(String.format("Shard %d of %d has %d of %d file(s)", shardIndex, shardCount, shard.size(), files.size()));
+        return shard;
+    }
+
+    /**
+     * Shuts down the executor of the {@link #pipeline} that runs the formatter
+     * when {@link #timeout} is set. Formatters that timed out are not waited
+     * for.
+     */
+    protected void shutdownFormatExecutor() {
+
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    /**
+     * Stores the format cache of the {@link #pipeline} if it is used.
+     */
+    protected void storeFormatCache() {
+
+        if (pipeline != null) {
+            pipeline.storeFormatCache();
+        }
+    }
+
+    /**
+     * Aggregates the failures of the individual files into a single report.
+     *
+     * @param failures
+     *            failures indexed by the file position, entries for files that
+     *            were processed successfully are <code>null</code>.
+     * @throws MojoFailureException
+     *             if there is at least one failure.
+     */
+    private static void throwFailures(final MojoFailureException[] failures) throws MojoFailureException {
+
+        final StringBuilder report = new StringBuilder();
+        int count = 0;
+        for (final MojoFailureException failure : failures) {
+            if (failure != null) {
+                ++count;
+                report.append('\n').append(failure.getMessage());
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        final MojoFailureException e = new MojoFailureException(count + " file(s) failed to format:" + report);
+        for (final MojoFailureException failure : failures) {
+            if (failure != null) {
+                e.addSuppressed(failure);
+            }
+        }
+        throw e;
+    }
+
+    /**
+     * Formats an individual file in memory. If the formatted content differs
+     * from what is on disk it is passed on to {@link #formatted(File, byte[])}.
+     * Made public to allow testing.
+     *
+     * @param file
+     *            file to process
+     * @param codeFormatter
+     *            configured code formatter
+     * @return <code>true</code> if the formatted content differs from what is
+     *         on disk.
+     * @throws MojoFailureException
+     *             failed processing individual file
+     */
+    public boolean formatFile(final File file,
+        final CodeFormatter codeFormatter) throws MojoFailureException {
+
+        if (pipeline != null) {
+            return pipeline.format(file, codeFormatter);
+        }
+        final FormatPipeline standalone = newPipeline();
+        try {
+            return standalone.format(file, codeFormatter);
+        } finally {
+            standalone.shutdown();
+        }
+    }
+
+    /**
+     * Gets the character set used to read and write the source files.
+     *
+     * @return {@link #encoding} or the platform encoding if it is not set
+     */
+    private Charset getCharset() {
+
+        return encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+    }
+
+    /**
+     * Checks if the standard Java conventions formatter should be used. This is
+     * determined when {@link #codeStyleBaseUrl} and
+     * {@link #javaFormatterProfileXmlUrl} are both null.
+     *
+     * @return true if standard Java conventions should be used.
+     */
+    private boolean isUseJavaConventions() {
+
+        return codeStyleBaseUrl == null && javaFormatterProfileXmlUrl == null;
+    }
+}
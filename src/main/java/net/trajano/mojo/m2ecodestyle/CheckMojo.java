@@ -0,0 +1,78 @@
+package net.trajano.mojo.m2ecodestyle;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Checks that the source files are already formatted using the Eclipse JDT
+ * formatter. No files are written, the build fails with the list of files that
+ * are not formatted.
+ */
+@Mojo(name = "check",
+    defaultPhase = LifecyclePhase.VERIFY,
+    threadSafe = true,
+    requiresOnline = false)
+public class CheckMojo extends AbstractFormatMojo {
+
+    /**
+     * Stops at the first file that is not formatted rather than checking all
+     * the files.
+     */
+    @Parameter(property = "codestyle.check.failFast",
+        defaultValue = "false")
+    private boolean failFast;
+
+    /**
+     * Does nothing as the check does not write any files.
+     *
+     * @param file
+     *            file that was formatted
+     * @param formattedContent
+     *            formatted content
+     */
+    @Override
+    protected void formatted(final File file,
+        final byte[] formattedContent) {
+
+        // does nothing
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isFailFast() {
+
+        return failFast;
+    }
+
+    /**
+     * Fails the build if there are any files that are not formatted.
+     *
+     * @param files
+     *            files that were scanned
+     * @param changedFiles
+     *            files that are not formatted
+     * @throws MojoFailureException
+     *             there are files that are not formatted
+     */
+    @Override
+    protected void summarize(final List<File> files,
+        final List<File> changedFiles) throws MojoFailureException {
+
+        if (changedFiles.isEmpty()) {
+            getLog().info(String.format("Checked %d file(s), all are formatted", files.size()));
+            return;
+        }
+        final StringBuilder report = new StringBuilder();
+        for (final File file : changedFiles) {
+            report.append('\n').append(file);
+        }
+        throw new MojoFailureException(changedFiles.size() + " file(s) are not formatted:" + report);
+    }
+}
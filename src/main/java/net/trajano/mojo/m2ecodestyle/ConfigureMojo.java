@@ -1,22 +1,23 @@
 package net.trajano.mojo.m2ecodestyle;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
-
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -25,12 +26,15 @@ import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.IOUtil;
 import org.sonatype.plexus.build.incremental.BuildContext;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 
+import net.trajano.mojo.m2ecodestyle.internal.AtomicFileWriter;
+import net.trajano.mojo.m2ecodestyle.internal.FormatCache;
 import net.trajano.mojo.m2ecodestyle.internal.PreferenceFileName;
+import net.trajano.mojo.m2ecodestyle.internal.PreferenceStore;
+import net.trajano.mojo.m2ecodestyle.internal.PreferencesWriter;
+import net.trajano.mojo.m2ecodestyle.internal.ProfileReader;
 
 /**
  * Configures Eclipse before any builds.
@@ -55,6 +59,12 @@ public class ConfigureMojo extends AbstractMojo {
         PreferenceFileName.JSDT_UI,
     };
 
+    /**
+     * Key used to store the configuration fingerprint in the
+     * {@link #stateFile}. It cannot clash with a prefs file name.
+     */
+    private static final String FINGERPRINT_KEY = "/fingerprint";
+
     /**
      * Build context.
      */
@@ -100,6 +110,13 @@ public class ConfigureMojo extends AbstractMojo {
     @Parameter(required = false)
     private String javaCleanupProfileXmlUrl;
 
+    /**
+     * Name of the profile to use when {@link #javaCleanupProfileXmlUrl}
+     * contains more than one. If this is not set, the first profile is used.
+     */
+    @Parameter(required = false)
+    private String javaCleanupProfileName;
+
     /**
      * <p>
      * This is the URL that points to the Java formatter profile XML. The
@@ -115,6 +132,14 @@ public class ConfigureMojo extends AbstractMojo {
         property = "codestyle.java.formatter.xml")
     private String javaFormatterProfileXmlUrl;
 
+    /**
+     * Name of the profile to use when {@link #javaFormatterProfileXmlUrl}
+     * contains more than one. If this is not set, the first profile is used.
+     */
+    @Parameter(required = false,
+        property = "codestyle.java.formatter.profile")
+    private String javaFormatterProfileName;
+
     /**
      * <p>
      * This is the URL that points to the JavaScript cleanup profile XML. The
@@ -178,12 +203,39 @@ public class ConfigureMojo extends AbstractMojo {
     @Parameter(required = false)
     private List<String> prefsFiles;
 
+    /**
+     * Runs the goal even when the configuration and the prefs files have not
+     * changed since the last run.
+     */
+    @Parameter(property = "codestyle.configure.force",
+        defaultValue = "false")
+    private boolean force;
+
+    /**
+     * Prefs files being updated by the current execution.
+     */
+    private PreferenceStore preferences;
+
     /**
      * Injected property retrieval component.
      */
     @Component
     private Retrieval retrieval;
 
+    /**
+     * <p>
+     * Records a fingerprint of the configuration and of the content fetched for
+     * it, along with the hashes of the prefs files that were produced. On
+     * incremental builds, such as the ones done by m2e, the goal only fetches
+     * the content, which is usually served by the cache, and does nothing else
+     * if the fingerprint is the same and the prefs files have not been changed
+     * since.
+     * </p>
+     */
+    @Parameter(defaultValue = "${project.build.directory}/m2e-codestyle/configure.state",
+        required = false)
+    private File stateFile;
+
     /**
      * {@inheritDoc}
      */
@@ -204,32 +256,51 @@ public class ConfigureMojo extends AbstractMojo {
 
         }
 
-        if (codeStyleBaseUrl != null) {
-            handlePreferenceMerge();
+        if (prefsFiles == null) {
+            prefsFiles = Arrays.asList(DEFAULT_PREFS);
+        }
+
+        final Map<String, Future<byte[]>> fetchedPrefs = codeStyleBaseUrl == null ? Collections.<String, Future<byte[]>> emptyMap() : fetchPreferences();
+        final Map<String, byte[]> fetched = fetchUrls();
+        final String fingerprint = fingerprint(fetchedPrefs, fetched);
+        if (!force && buildContext.isIncremental() && isUpToDate(fingerprint)) {
+            getLog().debug("Configuration, fetched content and prefs files are unchanged, skipping");
+            return;
         }
 
+        preferences = new PreferenceStore(destDir);
+        handlePreferenceMerge(fetchedPrefs);
+
         if (javaFormatterProfileXmlUrl != null) {
-            handleXmlPreferenceMerge(javaFormatterProfileXmlUrl, PreferenceFileName.JDT_CORE);
+            handleXmlPreferenceMerge(fetched.get(javaFormatterProfileXmlUrl), javaFormatterProfileName, PreferenceFileName.JDT_CORE);
         }
 
         if (javaCleanupProfileXmlUrl != null) {
-            handleXmlPreferenceMerge(javaCleanupProfileXmlUrl, PreferenceFileName.JDT_UI);
+            handleXmlPreferenceMerge(fetched.get(javaCleanupProfileXmlUrl), javaCleanupProfileName, PreferenceFileName.JDT_UI);
         }
 
         if (javaTemplatesXmlUrl != null) {
-            setPreferenceValue(javaTemplatesXmlUrl, PreferenceFileName.JDT_UI, "org.eclipse.jdt.ui.text.custom_code_templates");
+            setPreferenceValue(fetched.get(javaTemplatesXmlUrl), PreferenceFileName.JDT_UI, "org.eclipse.jdt.ui.text.custom_code_templates");
         }
         if (javaScriptFormatterProfileXmlUrl != null) {
-            handleXmlPreferenceMerge(javaScriptFormatterProfileXmlUrl, PreferenceFileName.JSDT_CORE);
+            handleXmlPreferenceMerge(fetched.get(javaScriptFormatterProfileXmlUrl), null, PreferenceFileName.JSDT_CORE);
         }
 
         if (javaScriptCleanupProfileXmlUrl != null) {
-            handleXmlPreferenceMerge(javaScriptCleanupProfileXmlUrl, PreferenceFileName.JSDT_UI);
+            handleXmlPreferenceMerge(fetched.get(javaScriptCleanupProfileXmlUrl), null, PreferenceFileName.JSDT_UI);
         }
 
         if (javaScriptTemplatesXmlUrl != null) {
-            setPreferenceValue(javaScriptTemplatesXmlUrl, PreferenceFileName.JSDT_UI, "org.eclipse.wst.jsdt.ui.text.custom_code_templates");
+            setPreferenceValue(fetched.get(javaScriptTemplatesXmlUrl), PreferenceFileName.JSDT_UI, "org.eclipse.wst.jsdt.ui.text.custom_code_templates");
+        }
+
+        try {
+            final List<String> written = preferences.flush(buildContext);
+            getLog().debug("Updated prefs files " + written);
+        } catch (final IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
         }
+        storeState(fingerprint);
     }
 
     /**
@@ -239,8 +310,10 @@ public class ConfigureMojo extends AbstractMojo {
      *            base URI
      * @param prefsFile
      *            prefs file being processed
-     * @throws URISyntaxException
+     * @deprecated the prefs files are fetched concurrently by
+     *             {@link #execute()}.
      */
+    @Deprecated
     public void fetchAndMerge(final URI codeStyleBaseUri,
         final String prefsFile) {
 
@@ -254,13 +327,14 @@ public class ConfigureMojo extends AbstractMojo {
     }
 
     /**
-     * Does the preference merge operations.
+     * Fetches the {@link #prefsFiles} from the {@link #codeStyleBaseUrl}
+     * concurrently.
+     *
+     * @return completed fetches keyed by prefs file
+     * @throws MojoExecutionException
+     *             I/O error
      */
-    private void handlePreferenceMerge() {
-
-        if (prefsFiles == null) {
-            prefsFiles = Arrays.asList(DEFAULT_PREFS);
-        }
+    private Map<String, Future<byte[]>> fetchPreferences() throws MojoExecutionException {
 
         final URI codeStyleBaseUri;
         if (codeStyleBaseUrl.endsWith("/")) {
@@ -269,87 +343,251 @@ public class ConfigureMojo extends AbstractMojo {
             codeStyleBaseUri = URI.create(codeStyleBaseUrl + "/");
             getLog().warn("the value of codeStyleBaseUrl does not end with '/' and will be implicitly appended");
         }
-        for (final String prefsFile : prefsFiles) {
-            fetchAndMerge(codeStyleBaseUri, prefsFile);
+        try {
+            return retrieval.fetchPreferences(codeStyleBaseUri, prefsFiles);
+        } catch (final IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
         }
+    }
 
+    /**
+     * Fetches the content of the profile and template URLs that are set.
+     *
+     * @return content keyed by URL
+     * @throws MojoExecutionException
+     *             a URL could not be fetched
+     */
+    private Map<String, byte[]> fetchUrls() throws MojoExecutionException {
+
+        final Map<String, byte[]> fetched = new LinkedHashMap<>();
+        for (final String url : new String[] {
+            javaFormatterProfileXmlUrl,
+            javaCleanupProfileXmlUrl,
+            javaTemplatesXmlUrl,
+            javaScriptFormatterProfileXmlUrl,
+            javaScriptCleanupProfileXmlUrl,
+            javaScriptTemplatesXmlUrl
+        }) {
+            if (url == null || fetched.containsKey(url)) {
+                continue;
+            }
+            try (final InputStream is = retrieval.openStream(url)) {
+                if (is == null) {
+                    throw new MojoExecutionException("unable to open url: " + url);
+                }
+                fetched.put(url, IOUtil.toByteArray(is));
+            } catch (final IOException e) {
+                throw new MojoExecutionException(e.getMessage(), e);
+            }
+        }
+        return fetched;
     }
 
     /**
-     * @param url
-     *            URL to the XML file
+     * Computes the fingerprint of the configuration and of the content that was
+     * fetched for it, so that a change on the server is picked up even if the
+     * configuration stays the same.
+     *
+     * @param fetchedPrefs
+     *            fetched prefs files
+     * @param fetched
+     *            fetched content keyed by URL
+     * @return fingerprint
+     * @throws MojoExecutionException
+     *             the build was interrupted while fetching
+     */
+    private String fingerprint(final Map<String, Future<byte[]>> fetchedPrefs,
+        final Map<String, byte[]> fetched) throws MojoExecutionException {
+
+        final StringBuilder b = new StringBuilder();
+        for (final Object value : new Object[] {
+            getClass().getPackage().getImplementationVersion(),
+            destDir.getAbsolutePath(),
+            codeStyleBaseUrl,
+            prefsFiles,
+            javaFormatterProfileXmlUrl,
+            javaFormatterProfileName,
+            javaCleanupProfileXmlUrl,
+            javaCleanupProfileName,
+            javaTemplatesXmlUrl,
+            javaScriptFormatterProfileXmlUrl,
+            javaScriptCleanupProfileXmlUrl,
+            javaScriptTemplatesXmlUrl
+        }) {
+            b.append(value).append('\n');
+        }
+        for (final Map.Entry<String, Future<byte[]>> entry : fetchedPrefs.entrySet()) {
+            b.append(entry.getKey()).append('=');
+            try {
+                final byte[] content = entry.getValue() == null ? null : entry.getValue().get();
+                b.append(content == null ? "missing" : FormatCache.hash(content));
+            } catch (final CancellationException
+                | ExecutionException e) {
+                // reported when merging, the next run is not skipped as the fetch may succeed
+                b.append("failed");
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException(e.getMessage(), e);
+            }
+            b.append('\n');
+        }
+        for (final Map.Entry<String, byte[]> entry : fetched.entrySet()) {
+            b.append(entry.getKey()).append('=').append(FormatCache.hash(entry.getValue())).append('\n');
+        }
+        return FormatCache.hash(b.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Merges the fetched prefs files in the order they are listed.
+     *
+     * @param fetched
+     *            fetched prefs files
+     * @throws MojoExecutionException
+     *             the build was interrupted while fetching
+     */
+    private void handlePreferenceMerge(final Map<String, Future<byte[]>> fetched) throws MojoExecutionException {
+
+        for (final String prefsFile : fetched.keySet()) {
+            final Future<byte[]> future = fetched.get(prefsFile);
+            try {
+                final Properties props = preferences.get(prefsFile);
+                final byte[] content = future == null ? null : future.get();
+                if (content == null) {
+                    getLog().debug("Ignoring file not found for " + prefsFile);
+                } else {
+                    props.load(new ByteArrayInputStream(content));
+                }
+            } catch (final CancellationException e) {
+                buildContext.addMessage(new File(destDir, prefsFile), 0, 0, "Timed out, will not process the file", BuildContext.SEVERITY_ERROR, e);
+            } catch (final ExecutionException e) {
+                buildContext.addMessage(new File(destDir, prefsFile), 0, 0, "I/O failure, will not process the file", BuildContext.SEVERITY_ERROR, e.getCause());
+            } catch (final IOException e) {
+                buildContext.addMessage(new File(destDir, prefsFile), 0, 0, "I/O failure, will not process the file", BuildContext.SEVERITY_ERROR, e);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException(e.getMessage(), e);
+            }
+        }
+
+    }
+
+    /**
+     * @param xml
+     *            content of the XML file
+     * @param profileName
+     *            name of the profile to merge, <code>null</code> for the first
+     *            one
      * @param prefsFile
      *            prefs file to update
-     * @return profile element
      */
-    private Element handleXmlPreferenceMerge(final String url,
+    private void handleXmlPreferenceMerge(final byte[] xml,
+        final String profileName,
         final String prefsFile) throws MojoExecutionException {
 
-        final XPathFactory xpf = XPathFactory.newInstance();
         try {
-            final XPath xp = xpf.newXPath();
-            final InputStream xmlStream = retrieval.openStream(url);
-            if (xmlStream == null) {
-                throw new MojoExecutionException("unable to open url: " + url);
-            }
-            final Element profileNode = (Element) xp.evaluate("/profiles/profile", new InputSource(xmlStream), XPathConstants.NODE);
-            xmlStream.close();
-            final NodeList settings = (NodeList) xp.evaluate("setting", profileNode, XPathConstants.NODESET);
-            final Properties prop = new Properties();
-            final File settingsFile = new File(destDir, prefsFile);
-            try (final FileInputStream prefsInputStream = new FileInputStream(settingsFile)) {
-                prop.load(prefsInputStream);
+            ProfileReader.read(new ByteArrayInputStream(xml), profileName, preferences.get(prefsFile));
+        } catch (final IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Checks if the {@link #stateFile} was written with the same configuration
+     * and fetched content, and the prefs files it lists still have the same
+     * content.
+     *
+     * @param fingerprint
+     *            current configuration fingerprint
+     * @return <code>true</code> if there is nothing to do.
+     */
+    private boolean isUpToDate(final String fingerprint) {
+
+        if (stateFile == null || !stateFile.isFile()) {
+            return false;
+        }
+        final Properties state = new Properties();
+        try (final InputStream is = Files.newInputStream(stateFile.toPath())) {
+            state.load(is);
+            if (!fingerprint.equals(state.remove(FINGERPRINT_KEY))) {
+                return false;
             }
-            for (int i = 0; i < settings.getLength(); ++i) {
-                final Element setting = (Element) settings.item(i);
-                prop.put(setting.getAttribute("id"), setting.getAttribute("value"));
+            for (final String prefsFile : state.stringPropertyNames()) {
+                if (!state.getProperty(prefsFile).equals(prefsFileHash(prefsFile))) {
+                    return false;
+                }
             }
+            return true;
+        } catch (final IOException e) {
+            getLog().debug("Unable to read " + stateFile, e);
+            return false;
+        }
+    }
 
-            try (final FileOutputStream fileOutputStream = new FileOutputStream(settingsFile)) {
-                prop.store(fileOutputStream, "Generated by m2e-codestyle-plugin");
-            }
+    /**
+     * Computes the hash of the prefs file.
+     *
+     * @param prefsFile
+     *            prefs file name
+     * @return content hash or an empty string if the file does not exist.
+     * @throws IOException
+     *             I/O error
+     */
+    private String prefsFileHash(final String prefsFile) throws IOException {
 
-            return profileNode;
-        } catch (final XPathExpressionException
-            | IOException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
+        final File file = new File(destDir, prefsFile);
+        if (!file.isFile()) {
+            return "";
         }
+        return FormatCache.hash(Files.readAllBytes(file.toPath()));
     }
 
     /**
-     * @param url
-     *            URL to the file
+     * @param data
+     *            content of the file
      * @param prefsFile
      *            prefs file to update
      * @param key
      *            preference key
      * @throws MojoExecutionException
      */
-    private void setPreferenceValue(final String url,
+    private void setPreferenceValue(final byte[] data,
         final String prefsFile,
         final String key) throws MojoExecutionException {
 
         try {
-            final Properties prop = new Properties();
-            final File settingsFile = new File(destDir, prefsFile);
-            try (final FileInputStream prefsInputStream = new FileInputStream(settingsFile)) {
-                prop.load(prefsInputStream);
-            }
-
             final String contents;
-            try (final InputStream dataStream = retrieval.openStream(url);
-                final Scanner scanner = new Scanner(dataStream)) {
+            try (final Scanner scanner = new Scanner(new ByteArrayInputStream(data))) {
                 contents = scanner.useDelimiter("\\A").next();
             }
-
-            try (final FileOutputStream fileOutputStream = new FileOutputStream(settingsFile)) {
-                prop.setProperty(key, contents);
-                prop.store(fileOutputStream, "Generated by m2e-codestyle-plugin");
-            }
+            preferences.get(prefsFile).setProperty(key, contents);
         } catch (final IOException e) {
             throw new MojoExecutionException(e.getMessage(), e);
         }
 
     }
 
+    /**
+     * Records the configuration fingerprint and the hashes of the prefs files
+     * in the {@link #stateFile}. It is written atomically with sorted keys and
+     * no timestamp so an interrupted build cannot leave a partial state.
+     *
+     * @param fingerprint
+     *            configuration fingerprint
+     */
+    private void storeState(final String fingerprint) {
+
+        if (stateFile == null) {
+            return;
+        }
+        final Properties state = new Properties();
+        state.setProperty(FINGERPRINT_KEY, fingerprint);
+        try {
+            for (final String prefsFile : preferences.getPrefsFiles()) {
+                state.setProperty(prefsFile, prefsFileHash(prefsFile));
+            }
+            AtomicFileWriter.write(stateFile, PreferencesWriter.format(state));
+        } catch (final IOException e) {
+            getLog().warn("Unable to store " + stateFile, e);
+        }
+    }
 }
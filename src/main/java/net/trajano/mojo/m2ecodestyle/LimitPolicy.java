@@ -0,0 +1,17 @@
+package net.trajano.mojo.m2ecodestyle;
+
+/**
+ * What the format goals do with a file that is larger than the maximum file
+ * size or that takes longer than the timeout to format.
+ */
+public enum LimitPolicy {
+    /**
+     * The file is reported as a failure and the build fails once all the other
+     * files have been processed.
+     */
+    FAIL,
+    /**
+     * The file is left as is and a warning is logged.
+     */
+    WARN
+}
@@ -0,0 +1,168 @@
+package net.trajano.mojo.m2ecodestyle;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.DirectoryScanner;
+
+import net.trajano.mojo.m2ecodestyle.internal.ShardManifest;
+
+/**
+ * <p>
+ * Combines the manifests written by the shards of the <code>format</code> or
+ * <code>check</code> goals into a single verdict. The build fails if a shard
+ * failed or if a shard of a project is missing.
+ * </p>
+ * <p>
+ * This is meant to run once the manifests of all the shards have been
+ * collected, e.g. as the last step of a CI pipeline.
+ * </p>
+ */
+@Mojo(name = "merge",
+    aggregator = true,
+    threadSafe = true,
+    requiresOnline = false)
+public class MergeMojo extends AbstractMojo {
+
+    /**
+     * Pattern of the manifest file names written by default.
+     */
+    private static final String MANIFEST_PATTERN = "**/shard-*.json";
+
+    /**
+     * Directory that is searched, including its sub-directories, for the
+     * <code>shard-*.json</code> manifests. If it is not set, the
+     * <code>m2e-codestyle</code> directories in the build directories of the
+     * reactor projects are searched.
+     */
+    @Parameter(property = "codestyle.shard.manifestDirectory",
+        required = false)
+    private File manifestDirectory;
+
+    /**
+     * The Maven session.
+     */
+    @Parameter(defaultValue = "${session}",
+        readonly = true)
+    private MavenSession session;
+
+    /**
+     * Merges the manifests.
+     *
+     * @throws MojoExecutionException
+     *             unable to read a manifest
+     * @throws MojoFailureException
+     *             no manifest was found, a shard failed or is missing
+     */
+    @Override
+    public void execute() throws MojoExecutionException,
+        MojoFailureException {
+
+        final List<File> manifestFiles = findManifests();
+        if (manifestFiles.isEmpty()) {
+            throw new MojoFailureException("No shard manifests found");
+        }
+
+        final List<String> problems = new ArrayList<>();
+        final Map<String, ShardManifest[]> shardsByProject = new TreeMap<>();
+        int scanned = 0;
+        int changed = 0;
+        for (final File manifestFile : manifestFiles) {
+            final ShardManifest manifest;
+            try {
+                manifest = ShardManifest.read(manifestFile);
+            } catch (final IOException e) {
+                throw new MojoExecutionException("unable to read shard manifest " + manifestFile, e);
+            }
+            ShardManifest[] shards = shardsByProject.get(manifest.getProject());
+            if (shards == null) {
+                shards = new ShardManifest[manifest.getShardCount()];
+                shardsByProject.put(manifest.getProject(), shards);
+            }
+            if (manifest.getShardCount() != shards.length || manifest.getShardIndex() < 0 || manifest.getShardIndex() >= shards.length) {
+                problems.add(String.format("%s: shard %d of %d does not match the other manifests of %s", manifestFile, manifest.getShardIndex(), manifest.getShardCount(), manifest.getProject()));
+                continue;
+            }
+            if (shards[manifest.getShardIndex()] != null) {
+                problems.add(String.format("%s: duplicate manifest for shard %d of %s", manifestFile, manifest.getShardIndex(), manifest.getProject()));
+                continue;
+            }
+            shards[manifest.getShardIndex()] = manifest;
+            scanned += manifest.getScanned();
+            changed += manifest.getChanged().size();
+            if (!manifest.isPassed()) {
+                problems.add(String.format("%s: shard %d failed", manifest.getProject(), manifest.getShardIndex()));
+                for (final String path : manifest.getChanged()) {
+                    problems.add(String.format("%s: %s", manifest.getProject(), path));
+                }
+            }
+            for (final String failure : manifest.getFailures()) {
+                problems.add(String.format("%s: %s", manifest.getProject(), failure));
+            }
+        }
+        for (final Map.Entry<String, ShardManifest[]> entry : shardsByProject.entrySet()) {
+            for (int i = 0; i < entry.getValue().length; ++i) {
+                if (entry.getValue()[i] == null) {
+                    problems.add(String.format("%s: missing manifest for shard %d of %d", entry.getKey(), i, entry.getValue().length));
+                }
+            }
+        }
+
+        getLog().info(String.format("Merged %d shard manifest(s) of %d project(s), %d file(s) scanned, %d changed or not formatted", manifestFiles.size(), shardsByProject.size(), scanned, changed));
+        if (problems.isEmpty()) {
+            return;
+        }
+        final StringBuilder report = new StringBuilder();
+        for (final String problem : problems) {
+            report.append('\n').append(problem);
+        }
+        throw new MojoFailureException("Sharded run failed:" + report);
+    }
+
+    /**
+     * Finds the manifest files.
+     *
+     * @return manifest files, sorted within each directory searched
+     */
+    private List<File> findManifests() {
+
+        final List<File> dirs = new ArrayList<>();
+        if (manifestDirectory != null) {
+            dirs.add(manifestDirectory);
+        } else if (session != null) {
+            for (final MavenProject project : session.getProjects()) {
+                dirs.add(new File(project.getBuild().getDirectory(), "m2e-codestyle"));
+            }
+        }
+        final List<File> files = new ArrayList<>();
+        for (final File dir : dirs) {
+            if (!dir.isDirectory()) {
+                continue;
+            }
+            final DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir(dir);
+            scanner.setIncludes(new String[] {
+                MANIFEST_PATTERN
+            });
+            scanner.scan();
+            final String[] includedFiles = scanner.getIncludedFiles();
+            Arrays.sort(includedFiles);
+            for (final String includedFile : includedFiles) {
+                files.add(new File(dir, includedFile));
+            }
+        }
+        return files;
+    }
+}
@@ -4,11 +4,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 public interface Retrieval {
 
     /**
-     * Fetch and merge the preferences file.
+     * Fetch and merge the preferences file. The merged file is written with
+     * sorted keys and without a time stamp and it is replaced atomically.
      *
      * @param codeStyleBaseUri
      *            base URI
@@ -18,11 +22,31 @@ public interface Retrieval {
      *            destination directory containing the prefs file.
      * @throws IOException
      *             I/O error
+     * @deprecated use {@link #fetchPreferences(URI, List)} which fetches the
+     *             prefs files concurrently.
      */
+    @Deprecated
     void fetchAndMerge(final URI codeStyleBaseUri,
         final String prefsFile,
         final File destDir) throws IOException;
 
+    /**
+     * Fetches the prefs files inside the code style base URI concurrently. The
+     * method returns once all of the fetches have completed or timed out.
+     *
+     * @param codeStyleBaseUri
+     *            code style base URI
+     * @param prefsFiles
+     *            prefs files to fetch
+     * @return completed fetches in the order of <code>prefsFiles</code>. The
+     *         value is <code>null</code> if the file is not available, a fetch
+     *         that failed throws the error from {@link Future#get()}.
+     * @throws IOException
+     *             I/O error
+     */
+    Map<String, Future<byte[]>> fetchPreferences(URI codeStyleBaseUri,
+        List<String> prefsFiles) throws IOException;
+
     /**
      * Create an input stream pointing to the prefs file inside the code style
      * base URI. The caller is responsible for closing the stream.
@@ -0,0 +1,259 @@
+package net.trajano.mojo.m2ecodestyle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.jdt.core.formatter.CodeFormatter;
+
+import net.trajano.mojo.m2ecodestyle.internal.FormatterRegistry;
+
+/**
+ * <p>
+ * Formats the source files and then keeps watching the source roots, formatting
+ * the files as they are saved. This avoids paying for the Maven start up and
+ * the JDT class loading on every change. The goal runs until Maven is stopped.
+ * </p>
+ * <p>
+ * Bursts of events, such as an editor writing a file in several steps, are
+ * collected for {@link #debounce} milliseconds before the files are formatted.
+ * Events caused by the goal writing the formatted files are ignored.
+ * </p>
+ */
+@Mojo(name = "watch",
+    threadSafe = false,
+    requiresOnline = false)
+public class WatchMojo extends FormatMojo {
+
+    /**
+     * Number of milliseconds to wait for more events before formatting the
+     * files that changed.
+     */
+    @Parameter(property = "codestyle.watch.debounce",
+        defaultValue = "50")
+    private long debounce;
+
+    /**
+     * Content written by the goal keyed by the file path. An event for a file
+     * whose content is still the same is caused by the goal itself.
+     */
+    private final Map<Path, byte[]> ownWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Source roots of the registered directories keyed by the watch key.
+     */
+    private final Map<WatchKey, Path> roots = new HashMap<>();
+
+    /**
+     * Adds the files in the directory and its sub-directories.
+     *
+     * @param dir
+     *            directory
+     * @param root
+     *            source root that contains the directory
+     * @param changed
+     *            receives the files keyed by their source root
+     * @throws IOException
+     *             I/O error
+     */
+    private static void addFiles(final Path dir,
+        final Path root,
+        final Map<Path, Path> changed) throws IOException {
+
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs) {
+
+                changed.put(file, root);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Formats the source files and then watches for changes until the thread is
+     * interrupted.
+     *
+     * @throws MojoExecutionException
+     *             unable to build the formatter or watch the source roots
+     */
+    @Override
+    public void execute() throws MojoExecutionException {
+
+        try {
+            super.execute();
+        } catch (final MojoFailureException e) {
+            getLog().warn(e.getMessage());
+        }
+
+        final FormatterRegistry.Lease lease = getFormatterRegistry().lease();
+        try (final WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            for (final File root : getSourceRoots()) {
+                register(watchService, root.toPath(), root.toPath());
+            }
+            getLog().info("Watching " + getSourceRoots() + " for changes, stop Maven to end");
+            watch(watchService, lease);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("unable to watch the source roots", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            roots.clear();
+            lease.release();
+            shutdownFormatExecutor();
+            storeFormatCache();
+        }
+    }
+
+    /**
+     * Formats the files that changed.
+     *
+     * @param changed
+     *            changed files keyed by their source root
+     * @param lease
+     *            code formatters of the watch thread
+     */
+    private void formatChanged(final Map<Path, Path> changed,
+        final FormatterRegistry.Lease lease) {
+
+        for (final Map.Entry<Path, Path> entry : changed.entrySet()) {
+            final Path path = entry.getKey();
+            if (!Files.isRegularFile(path) || !isIncluded(entry.getValue().relativize(path).toString())) {
+                continue;
+            }
+            final CodeFormatter codeFormatter = lease.get(path.toFile());
+            if (codeFormatter == null) {
+                continue;
+            }
+            try {
+                final byte[] ownWrite = ownWrites.remove(path);
+                if (ownWrite != null && Arrays.equals(ownWrite, Files.readAllBytes(path))) {
+                    continue;
+                }
+                final long start = System.nanoTime();
+                if (formatFile(path.toFile(), codeFormatter)) {
+                    getLog().info(String.format("Formatted %s in %d ms", path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                }
+            } catch (final IOException
+                | MojoFailureException e) {
+                getLog().warn(e.getMessage());
+            }
+            discardIfTimedOut(lease, path.toFile(), codeFormatter);
+        }
+    }
+
+    /**
+     * Writes the formatted content and remembers it so the events caused by the
+     * write are ignored.
+     *
+     * @param file
+     *            file that was formatted
+     * @param formattedContent
+     *            formatted content
+     * @throws IOException
+     *             I/O error
+     */
+    @Override
+    protected void formatted(final File file,
+        final byte[] formattedContent) throws IOException {
+
+        ownWrites.put(file.toPath(), formattedContent);
+        super.formatted(file, formattedContent);
+    }
+
+    /**
+     * Registers the directory and its sub-directories with the watch service.
+     *
+     * @param watchService
+     *            watch service
+     * @param dir
+     *            directory to register
+     * @param root
+     *            source root that contains the directory
+     * @throws IOException
+     *             I/O error
+     */
+    private void register(final WatchService watchService,
+        final Path dir,
+        final Path root) throws IOException {
+
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(final Path subDir,
+                final BasicFileAttributes attrs) throws IOException {
+
+                roots.put(subDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY), root);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Waits for events and formats the files that changed. Directories that are
+     * created are registered along with the files in them.
+     *
+     * @param watchService
+     *            watch service
+     * @param lease
+     *            code formatters of the watch thread
+     * @throws IOException
+     *             I/O error registering a new directory
+     * @throws InterruptedException
+     *             the goal is being stopped
+     */
+    private void watch(final WatchService watchService,
+        final FormatterRegistry.Lease lease) throws IOException,
+        InterruptedException {
+
+        while (!Thread.currentThread().isInterrupted()) {
+            final Map<Path, Path> changed = new LinkedHashMap<>();
+            for (WatchKey key = watchService.take(); key != null; key = watchService.poll(debounce, TimeUnit.MILLISECONDS)) {
+                final Path dir = (Path) key.watchable();
+                final Path root = roots.get(key);
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        getLog().warn("Missed file system events in " + dir + ", save the files again to format them");
+                        continue;
+                    }
+                    final Path path = dir.resolve((Path) event.context());
+                    if (Files.isDirectory(path)) {
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            // files may have been written before the directory was registered
+                            register(watchService, path, root);
+                            addFiles(path, root, changed);
+                        }
+                    } else {
+                        changed.put(path, root);
+                    }
+                }
+                if (!key.reset()) {
+                    roots.remove(key);
+                }
+            }
+            formatChanged(changed, lease);
+            storeFormatCache();
+        }
+    }
+}
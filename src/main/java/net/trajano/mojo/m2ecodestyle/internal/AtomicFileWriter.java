@@ -0,0 +1,91 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+/**
+ * <p>
+ * Replaces the content of files so that other processes, or a later build after
+ * an interrupted one, see either the old or the new content and never a
+ * truncated file. The content is written to a temporary file in the same
+ * directory, forced to disk and then moved over the target.
+ * </p>
+ * <p>
+ * If the target already exists, its POSIX permissions are copied to the new
+ * file where the file system supports them.
+ * </p>
+ */
+public final class AtomicFileWriter {
+
+    /**
+     * Writes the file atomically.
+     *
+     * @param file
+     *            file to write, the parent directory is created if needed.
+     * @param content
+     *            content
+     * @throws IOException
+     *             I/O error
+     */
+    public static void write(final File file,
+        final byte[] content) throws IOException {
+
+        final Path target = file.toPath().toAbsolutePath();
+        final Path directory = target.getParent();
+        Files.createDirectories(directory);
+
+        // Files.createTempFile is not used as it makes the file readable only by the owner
+        final Path temp = directory.resolve("." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            Files.write(temp, content, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+            final PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+            if (targetView != null && Files.exists(target)) {
+                Files.getFileAttributeView(temp, PosixFileAttributeView.class).setPermissions(targetView.readAttributes().permissions());
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the file atomically and lets the build context know that it has
+     * changed.
+     *
+     * @param file
+     *            file to write, the parent directory is created if needed.
+     * @param content
+     *            content
+     * @param buildContext
+     *            build context
+     * @throws IOException
+     *             I/O error
+     */
+    public static void write(final File file,
+        final byte[] content,
+        final BuildContext buildContext) throws IOException {
+
+        write(file, content);
+        buildContext.refresh(file);
+    }
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private AtomicFileWriter() {
+
+    }
+}
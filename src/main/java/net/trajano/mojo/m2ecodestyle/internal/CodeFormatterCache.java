@@ -0,0 +1,236 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.formatter.CodeFormatter;
+
+/**
+ * <p>
+ * JVM wide cache of the formatter options that have been built for a given
+ * configuration along with the {@link CodeFormatter} instances created from
+ * them. This allows the modules of a reactor that share the same settings to
+ * reuse the work done by the first module.
+ * </p>
+ * <p>
+ * The cache is scoped to a build session. When a different session is seen, the
+ * cache is cleared so changes to remote settings are picked up by the next
+ * build in long running processes such as Eclipse.
+ * </p>
+ * <p>
+ * As {@link CodeFormatter} is not thread-safe, instances are lent out with
+ * {@link #acquire()} and must be given back with
+ * {@link #release(CodeFormatter)} once the caller is done with them.
+ * </p>
+ * <p>
+ * The code formatters are created by a {@link Factory} so formatters for other
+ * languages can be cached the same way as the JDT one.
+ * </p>
+ */
+public final class CodeFormatterCache {
+
+    /**
+     * Creates code formatters from the options.
+     */
+    public interface Factory {
+
+        /**
+         * Creates a code formatter.
+         *
+         * @param options
+         *            formatter options
+         * @return code formatter
+         */
+        CodeFormatter create(Map<?, ?> options);
+    }
+
+    /**
+     * Cached entries keyed by the configuration.
+     */
+    private static final ConcurrentMap<String, CodeFormatterCache> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the JDT code formatter.
+     */
+    public static final Factory JDT = new Factory() {
+
+        @Override
+        public CodeFormatter create(final Map<?, ?> options) {
+
+            return ToolFactory.createCodeFormatter(options);
+        }
+    };
+
+    /**
+     * Number of cache hits.
+     */
+    private static final AtomicLong HITS = new AtomicLong();
+
+    /**
+     * Number of cache misses.
+     */
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    /**
+     * Session that the cache entries belong to.
+     */
+    private static WeakReference<Object> session = new WeakReference<>(null);
+
+    /**
+     * Gets the cache entry for the configuration.
+     *
+     * @param currentSession
+     *            object identifying the current build session
+     * @param key
+     *            configuration key
+     * @return cache entry or <code>null</code> if there is none.
+     */
+    public static CodeFormatterCache get(final Object currentSession,
+        final String key) {
+
+        synchronized (CodeFormatterCache.class) {
+            if (session.get() != currentSession) {
+                CACHE.clear();
+                session = new WeakReference<>(currentSession);
+            }
+        }
+        final CodeFormatterCache entry = CACHE.get(key);
+        if (entry == null) {
+            MISSES.incrementAndGet();
+        } else {
+            HITS.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Gets the number of cache hits.
+     *
+     * @return number of cache hits
+     */
+    public static long getHits() {
+
+        return HITS.get();
+    }
+
+    /**
+     * Gets the number of cache misses.
+     *
+     * @return number of cache misses
+     */
+    public static long getMisses() {
+
+        return MISSES.get();
+    }
+
+    /**
+     * Adds an entry for the configuration using the JDT code formatter. If
+     * another thread has added one in the meantime, that entry is returned
+     * instead.
+     *
+     * @param key
+     *            configuration key
+     * @param options
+     *            formatter options, a copy is made
+     * @return cache entry
+     */
+    public static CodeFormatterCache put(final String key,
+        final Map<?, ?> options) {
+
+        return put(key, options, JDT);
+    }
+
+    /**
+     * Adds an entry for the configuration. If another thread has added one in
+     * the meantime, that entry is returned instead.
+     *
+     * @param key
+     *            configuration key
+     * @param options
+     *            formatter options, a copy is made
+     * @param factory
+     *            creates the code formatters
+     * @return cache entry
+     */
+    public static CodeFormatterCache put(final String key,
+        final Map<?, ?> options,
+        final Factory factory) {
+
+        final CodeFormatterCache entry = new CodeFormatterCache(options, factory);
+        final CodeFormatterCache existing = CACHE.putIfAbsent(key, entry);
+        return existing == null ? entry : existing;
+    }
+
+    /**
+     * Creates the code formatters.
+     */
+    private final Factory factory;
+
+    /**
+     * Idle code formatters.
+     */
+    private final Queue<CodeFormatter> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Formatter options.
+     */
+    private final Map<?, ?> options;
+
+    /**
+     * Constructs the entry.
+     *
+     * @param options
+     *            formatter options, a copy is made
+     * @param factory
+     *            creates the code formatters
+     */
+    private CodeFormatterCache(final Map<?, ?> options,
+        final Factory factory) {
+
+        this.factory = factory;
+        this.options = Collections.unmodifiableMap(new HashMap<>(options));
+    }
+
+    /**
+     * Lends out a code formatter, creating one if there are no idle ones.
+     *
+     * @return code formatter
+     */
+    public CodeFormatter acquire() {
+
+        final CodeFormatter codeFormatter = idle.poll();
+        if (codeFormatter != null) {
+            return codeFormatter;
+        }
+        return factory.create(options);
+    }
+
+    /**
+     * Gets the formatter options.
+     *
+     * @return unmodifiable formatter options
+     */
+    public Map<?, ?> getOptions() {
+
+        return options;
+    }
+
+    /**
+     * Gives back a code formatter obtained by {@link #acquire()}.
+     *
+     * @param codeFormatter
+     *            code formatter
+     */
+    public void release(final CodeFormatter codeFormatter) {
+
+        idle.offer(codeFormatter);
+    }
+}
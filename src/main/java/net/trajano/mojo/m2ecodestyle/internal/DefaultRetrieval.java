@@ -1,17 +1,29 @@
 package net.trajano.mojo.m2ecodestyle.internal;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
-import org.codehaus.plexus.util.io.URLInputStreamFacade;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.LegacySupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonatype.plexus.build.incremental.BuildContext;
@@ -19,49 +31,226 @@ import org.sonatype.plexus.build.incremental.BuildContext;
 import net.trajano.mojo.m2ecodestyle.Retrieval;
 
 /**
- * Default implementation of {@link Retrieval}
+ * Default implementation of {@link Retrieval}. HTTP and HTTPS resources are
+ * cached under the local repository, see {@link RemoteCache}. The time to live
+ * of the cached entries is set in seconds using the
+ * {@value #CACHE_TTL_PROPERTY} property. Connections time out after the number
+ * of seconds in the {@value #TIMEOUT_PROPERTY} property.
  */
 public class DefaultRetrieval implements
     Retrieval {
 
+    /**
+     * Property containing the time to live of the cached entries in seconds.
+     */
+    public static final String CACHE_TTL_PROPERTY = "codestyle.cache.ttl";
+
+    /**
+     * Property containing the connect and read timeout in seconds.
+     */
+    public static final String TIMEOUT_PROPERTY = "codestyle.fetch.timeout";
+
+    /**
+     * Default time to live of the cached entries in seconds.
+     */
+    private static final long DEFAULT_CACHE_TTL = 3600;
+
+    /**
+     * Default connect and read timeout in seconds.
+     */
+    private static final int DEFAULT_TIMEOUT = 30;
+
     /**
      * Logger.
      */
     private static final Logger LOG = LoggerFactory.getLogger(DefaultRetrieval.class);
 
+    /**
+     * Maximum number of concurrent fetches done by
+     * {@link #fetchPreferences(URI, List)}.
+     */
+    private static final int MAX_CONCURRENT_FETCHES = 8;
+
+    /**
+     * Reads the full content of a stream.
+     *
+     * @param is
+     *            input stream, it is not closed.
+     * @return content
+     * @throws IOException
+     *             I/O error
+     */
+    private static byte[] readFully(final InputStream is) throws IOException {
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int c = is.read(buffer);
+        while (c != -1) {
+            baos.write(buffer, 0, c);
+            c = is.read(buffer);
+        }
+        return baos.toByteArray();
+    }
+
     /**
      * Build context.
      */
     @Inject
     private BuildContext buildContext;
 
+    /**
+     * Provides the current session. It is used to locate the local repository
+     * and to check whether the build is offline.
+     */
+    @Inject
+    private LegacySupport legacySupport;
+
     /**
      * {@inheritDoc}
      */
+    @Deprecated
     @Override
     public void fetchAndMerge(final URI codeStyleBaseUri,
         final String prefsFile,
         final File destDir) throws IOException {
 
+        final InputStream prefsInputStream = openPreferenceStream(codeStyleBaseUri, prefsFile);
+        if (prefsInputStream == null) {
+            return;
+        }
         final File destFile = new File(destDir, prefsFile);
         final Properties props = new Properties();
         if (destFile.exists()) {
-            final FileInputStream fileInputStream = new FileInputStream(destFile);
-            props.load(fileInputStream);
-            fileInputStream.close();
+            try (final FileInputStream fileInputStream = new FileInputStream(destFile)) {
+                props.load(fileInputStream);
+            }
+        }
+        final Properties original = (Properties) props.clone();
+        try {
+            props.load(prefsInputStream);
+        } finally {
+            prefsInputStream.close();
         }
 
-        final InputStream prefsInputStream = openPreferenceStream(codeStyleBaseUri, prefsFile);
-
-        if (prefsInputStream == null) {
+        if (destFile.exists() && props.equals(original)) {
             return;
         }
-        props.load(prefsInputStream);
-        prefsInputStream.close();
+        AtomicFileWriter.write(destFile, PreferencesWriter.format(props), buildContext);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * At most {@value #MAX_CONCURRENT_FETCHES} files are fetched at the same
+     * time, so the files are fetched in waves. Fetches that have not completed
+     * within twice the connection timeout for each wave are cancelled, so a
+     * fetch that is waiting for its turn is not cut short by a deadline meant
+     * for a single wave.
+     * </p>
+     */
+    @Override
+    public Map<String, Future<byte[]>> fetchPreferences(final URI codeStyleBaseUri,
+        final List<String> prefsFiles) throws IOException {
+
+        final Map<String, Future<byte[]>> results = new LinkedHashMap<>();
+        if (prefsFiles.isEmpty()) {
+            return results;
+        }
+
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final List<Callable<byte[]>> tasks = new ArrayList<>(prefsFiles.size());
+        for (final String prefsFile : prefsFiles) {
+            tasks.add(new Callable<byte[]>() {
+
+                @Override
+                public byte[] call() throws IOException {
+
+                    Thread.currentThread().setContextClassLoader(contextClassLoader);
+                    try (final InputStream is = openPreferenceStream(codeStyleBaseUri, prefsFile)) {
+                        return is == null ? null : readFully(is);
+                    }
+                }
+            });
+        }
+
+        final int threadCount = Math.min(prefsFiles.size(), MAX_CONCURRENT_FETCHES);
+        final int waves = (prefsFiles.size() + threadCount - 1) / threadCount;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<byte[]>> futures = executor.invokeAll(tasks, 2L * getTimeout() * waves, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < prefsFiles.size(); ++i) {
+                results.put(prefsFiles.get(i), futures.get(i));
+            }
+            return results;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the remote cache for the current session.
+     *
+     * @return remote cache or <code>null</code> if there is no session.
+     */
+    private RemoteCache getRemoteCache() {
+
+        final MavenSession session = getSession();
+        if (session == null || session.getRequest().getLocalRepositoryPath() == null) {
+            return null;
+        }
+        final long ttl = Long.parseLong(getSessionProperty(session, CACHE_TTL_PROPERTY, String.valueOf(DEFAULT_CACHE_TTL)));
+        final File directory = new File(session.getRequest().getLocalRepositoryPath(), ".cache/m2e-codestyle");
+        return new RemoteCache(directory, ttl * 1000, session.isOffline(), getTimeout());
+    }
+
+    /**
+     * Gets the current session.
+     *
+     * @return session or <code>null</code> if there is none.
+     */
+    private MavenSession getSession() {
+
+        return legacySupport == null ? null : legacySupport.getSession();
+    }
+
+    /**
+     * Gets a property from the user properties of the session falling back to
+     * the system properties.
+     *
+     * @param session
+     *            session
+     * @param key
+     *            property key
+     * @param defaultValue
+     *            value if the property is not set
+     * @return property value
+     */
+    private String getSessionProperty(final MavenSession session,
+        final String key,
+        final String defaultValue) {
+
+        final String value = session.getUserProperties().getProperty(key);
+        if (value != null) {
+            return value;
+        }
+        return session.getSystemProperties().getProperty(key, defaultValue);
+    }
+
+    /**
+     * Gets the connect and read timeout.
+     *
+     * @return timeout in milliseconds
+     */
+    private int getTimeout() {
 
-        try (final OutputStream outputStream = buildContext.newFileOutputStream(destFile)) {
-            props.store(outputStream, "Generated by m2e codestyle maven plugin");
+        final MavenSession session = getSession();
+        if (session == null) {
+            return DEFAULT_TIMEOUT * 1000;
         }
+        return Integer.parseInt(getSessionProperty(session, TIMEOUT_PROPERTY, String.valueOf(DEFAULT_TIMEOUT))) * 1000;
     }
 
     /**
@@ -77,7 +266,14 @@ public class DefaultRetrieval implements
 
         try {
             if (resolved.isAbsolute()) {
-                return new URLInputStreamFacade(resolved.toURL()).getInputStream();
+                final RemoteCache remoteCache = RemoteCache.isCacheable(resolved) ? getRemoteCache() : null;
+                if (remoteCache != null) {
+                    return remoteCache.open(resolved);
+                }
+                final URLConnection connection = resolved.toURL().openConnection();
+                connection.setConnectTimeout(getTimeout());
+                connection.setReadTimeout(getTimeout());
+                return connection.getInputStream();
             } else {
                 return Thread.currentThread().getContextClassLoader().getResourceAsStream(resolved.toString());
             }
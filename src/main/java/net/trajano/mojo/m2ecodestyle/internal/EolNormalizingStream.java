@@ -75,6 +75,52 @@ public final class EolNormalizingStream extends FilterOutputStream {
         super.close();
     }
 
+    /**
+     * Writes the bytes forwarding the runs of bytes between CR and LF
+     * characters to the underlying stream in a single call rather than one byte
+     * at a time. CR characters are dropped and LF characters are replaced by
+     * the line separator bytes.
+     *
+     * @param b
+     *            data
+     * @param off
+     *            start offset in the data
+     * @param len
+     *            number of bytes to write
+     * @throws IOException
+     *             I/O error
+     */
+    @Override
+    public void write(final byte[] b,
+        final int off,
+        final int len) throws IOException {
+
+        if ((off | len | b.length - (len + off) | off + len) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return;
+        }
+        final int end = off + len;
+        int start = off;
+        for (int i = off; i < end; ++i) {
+            final byte c = b[i];
+            if (c == LF || c == CR) {
+                if (i > start) {
+                    out.write(b, start, i - start);
+                }
+                if (c == LF) {
+                    out.write(lineSeparatorBytes);
+                }
+                start = i + 1;
+            }
+        }
+        if (end > start) {
+            out.write(b, start, end - start);
+        }
+        lastCharacterWrittenLF = b[end - 1] == LF;
+    }
+
     /**
      * Checks if the "LF" character is received if so it will write the line
      * separator bytes, if it is CR it will ignore and other cases it will write
@@ -107,8 +153,6 @@ public final class EolNormalizingStream extends FilterOutputStream {
      */
     private void writeLineSeparator() throws IOException {
 
-        for (final byte lb : lineSeparatorBytes) {
-            super.write(lb);
-        }
+        out.write(lineSeparatorBytes);
     }
 }
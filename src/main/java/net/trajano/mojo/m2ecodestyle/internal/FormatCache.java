@@ -0,0 +1,252 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * <p>
+ * Keeps track of the content hashes of files that have already been formatted.
+ * A file whose current content hash matches the hash of the content that was
+ * last written by the formatter does not need to be formatted again.
+ * </p>
+ * <p>
+ * The cache is tied to a fingerprint of the formatter options and the JDT
+ * version. If the fingerprint changes, the whole cache is discarded.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public final class FormatCache {
+
+    /**
+     * Key used to store the fingerprint in the cache file. It cannot clash with
+     * a file name as it is not an absolute path.
+     */
+    private static final String FINGERPRINT_KEY = "fingerprint";
+
+    /**
+     * Digest algorithm used for the hashes.
+     */
+    private static final String HASH_ALGORITHM = "SHA-1";
+
+    /**
+     * Hex digits.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Computes the fingerprint of the formatter options. The JDT version is
+     * included as the output of the formatter may change between releases. The
+     * encoding and the platform line separator are included as they change the
+     * bytes that are written.
+     *
+     * @param options
+     *            formatter options
+     * @param charset
+     *            encoding of the source files
+     * @return fingerprint
+     */
+    public static String fingerprint(final Map<?, ?> options,
+        final Charset charset) {
+
+        final StringBuilder b = new StringBuilder(jdtVersion());
+        b.append('\n').append(charset.name());
+        b.append('\n').append(System.lineSeparator());
+        for (final Map.Entry<String, String> entry : new TreeMap<>(toStringMap(options)).entrySet()) {
+            b.append('\n').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return hash(b.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Computes the hash of the given content.
+     *
+     * @param content
+     *            content
+     * @return hex encoded hash
+     */
+    public static String hash(final byte[] content) {
+
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(content);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; ++i) {
+            hex[i * 2] = HEX[digest[i] >> 4 & 0xf];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Determines the version of the JDT core library that is being used.
+     *
+     * @return JDT version
+     */
+    private static String jdtVersion() {
+
+        final String version = JavaCore.class.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        final CodeSource codeSource = JavaCore.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            return codeSource.getLocation().toString();
+        }
+        return "unknown";
+    }
+
+    /**
+     * Loads the cache from the file. If the file does not exist, cannot be read
+     * or was written with a different fingerprint, an empty cache is returned.
+     *
+     * @param cacheFile
+     *            cache file
+     * @param fingerprint
+     *            fingerprint of the current formatter options
+     * @return cache
+     */
+    public static FormatCache load(final File cacheFile,
+        final String fingerprint) {
+
+        final FormatCache cache = new FormatCache(cacheFile, fingerprint);
+        if (!cacheFile.isFile()) {
+            return cache;
+        }
+        final Properties props = new Properties();
+        try (final InputStream is = new FileInputStream(cacheFile)) {
+            props.load(is);
+        } catch (final IOException e) {
+            return cache;
+        }
+        if (fingerprint.equals(props.getProperty(FINGERPRINT_KEY))) {
+            props.remove(FINGERPRINT_KEY);
+            cache.hashes.putAll(toStringMap(props));
+        }
+        return cache;
+    }
+
+    /**
+     * Converts the map to a map of strings.
+     *
+     * @param map
+     *            map to convert
+     * @return map of strings
+     */
+    private static Map<String, String> toStringMap(final Map<?, ?> map) {
+
+        final Map<String, String> ret = new TreeMap<>();
+        for (final Map.Entry<?, ?> entry : map.entrySet()) {
+            ret.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        return ret;
+    }
+
+    /**
+     * Cache file.
+     */
+    private final File cacheFile;
+
+    /**
+     * Indicates that the cache has been modified since it was loaded.
+     */
+    private volatile boolean dirty;
+
+    /**
+     * Fingerprint of the formatter options.
+     */
+    private final String fingerprint;
+
+    /**
+     * Content hashes keyed by the absolute path of the file.
+     */
+    private final ConcurrentMap<String, String> hashes = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs the cache.
+     *
+     * @param cacheFile
+     *            cache file
+     * @param fingerprint
+     *            fingerprint of the current formatter options
+     */
+    private FormatCache(final File cacheFile,
+        final String fingerprint) {
+
+        this.cacheFile = cacheFile;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Checks if the content of the file is the same as what was last written by
+     * the formatter.
+     *
+     * @param file
+     *            file
+     * @param content
+     *            current content of the file
+     * @return <code>true</code> if the file does not need formatting.
+     */
+    public boolean isFormatted(final File file,
+        final byte[] content) {
+
+        final String expected = hashes.get(file.getAbsolutePath());
+        return expected != null && expected.equals(hash(content));
+    }
+
+    /**
+     * Records the content of the file as formatted.
+     *
+     * @param file
+     *            file
+     * @param content
+     *            formatted content of the file
+     */
+    public void setFormatted(final File file,
+        final byte[] content) {
+
+        final String hash = hash(content);
+        if (!hash.equals(hashes.put(file.getAbsolutePath(), hash))) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the cache to the file if it has been modified.
+     *
+     * @throws IOException
+     *             I/O error
+     */
+    public void store() throws IOException {
+
+        if (!dirty) {
+            return;
+        }
+        final Properties props = new Properties();
+        props.putAll(hashes);
+        props.setProperty(FINGERPRINT_KEY, fingerprint);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        props.store(os, "m2e codestyle format cache");
+        AtomicFileWriter.write(cacheFile, os.toByteArray());
+        dirty = false;
+    }
+}
@@ -0,0 +1,393 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Collects timings and counters for a run of the format goals. The time of each
+ * phase is summed over all the worker threads so with more than one thread the
+ * phase times add up to more than the elapsed time.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public final class FormatMetrics {
+
+    /**
+     * Counters.
+     */
+    public enum Counter {
+        /**
+         * Bytes read from the source files.
+         */
+        BYTES_IN,
+        /**
+         * Bytes of formatted content produced.
+         */
+        BYTES_OUT,
+        /**
+         * Files whose formatted content differs from what is on disk.
+         */
+        CHANGED,
+        /**
+         * Files left as is because they exceeded the size or time limit.
+         */
+        OVER_LIMIT,
+        /**
+         * Files found by the scan.
+         */
+        SCANNED,
+        /**
+         * Files skipped as they were not changed since they were last
+         * formatted.
+         */
+        SKIPPED
+    }
+
+    /**
+     * Phases of the format goals.
+     */
+    public enum Phase {
+        /**
+         * Applying the Java clean up actions.
+         */
+        CLEAN_UP,
+        /**
+         * Running the JDT code formatter and applying its edits.
+         */
+        FORMAT,
+        /**
+         * Encoding the formatted content and normalizing the line endings.
+         */
+        NORMALIZE,
+        /**
+         * Reading the source files.
+         */
+        READ,
+        /**
+         * Finding the source files.
+         */
+        SCAN,
+        /**
+         * Writing the formatted files.
+         */
+        WRITE
+    }
+
+    /**
+     * Time spent on a single file.
+     */
+    private static final class FileTime {
+
+        /**
+         * File.
+         */
+        private final File file;
+
+        /**
+         * Time in nanoseconds.
+         */
+        private final long nanos;
+
+        /**
+         * Constructs the entry.
+         *
+         * @param file
+         *            file
+         * @param nanos
+         *            time in nanoseconds
+         */
+        FileTime(final File file,
+            final long nanos) {
+
+            this.file = file;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * Orders the file times from the fastest to the slowest.
+     */
+    private static final Comparator<FileTime> FASTEST_FIRST = new Comparator<FileTime>() {
+
+        @Override
+        public int compare(final FileTime o1,
+            final FileTime o2) {
+
+            return Long.compare(o1.nanos, o2.nanos);
+        }
+    };
+
+    /**
+     * Escapes a string for JSON.
+     *
+     * @param text
+     *            text
+     * @return quoted and escaped text
+     */
+    static String jsonString(final String text) {
+
+        final StringBuilder b = new StringBuilder("\"");
+        for (final char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < 0x20) {
+                b.append(String.format("\\u%04x", (int) c));
+            } else {
+                b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds.
+     *
+     * @param nanos
+     *            nanoseconds
+     * @return milliseconds
+     */
+    private static long millis(final long nanos) {
+
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Counter values.
+     */
+    private final Map<Counter, AtomicLong> counters = new EnumMap<>(Counter.class);
+
+    /**
+     * Time spent in each phase in nanoseconds.
+     */
+    private final Map<Phase, LongAdder> phases = new EnumMap<>(Phase.class);
+
+    /**
+     * The slowest files seen so far, the fastest of them at the head.
+     */
+    private final PriorityQueue<FileTime> slowest = new PriorityQueue<>(11, FASTEST_FIRST);
+
+    /**
+     * Number of slowest files to keep.
+     */
+    private final int slowestCount;
+
+    /**
+     * Constructs the metrics.
+     *
+     * @param slowestCount
+     *            number of slowest files to keep
+     */
+    public FormatMetrics(final int slowestCount) {
+
+        this.slowestCount = slowestCount;
+        for (final Counter counter : Counter.values()) {
+            counters.put(counter, new AtomicLong());
+        }
+        for (final Phase phase : Phase.values()) {
+            phases.put(phase, new LongAdder());
+        }
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter
+     *            counter
+     * @param delta
+     *            amount to add
+     */
+    public void add(final Counter counter,
+        final long delta) {
+
+        counters.get(counter).addAndGet(delta);
+    }
+
+    /**
+     * Records the time spent in a phase.
+     *
+     * @param phase
+     *            phase
+     * @param nanos
+     *            time in nanoseconds
+     */
+    public void addTime(final Phase phase,
+        final long nanos) {
+
+        phases.get(phase).add(nanos);
+    }
+
+    /**
+     * Records the total time spent on a file.
+     *
+     * @param file
+     *            file
+     * @param nanos
+     *            time in nanoseconds
+     */
+    public void fileTime(final File file,
+        final long nanos) {
+
+        if (slowestCount <= 0) {
+            return;
+        }
+        synchronized (slowest) {
+            if (slowest.size() < slowestCount) {
+                slowest.add(new FileTime(file, nanos));
+            } else if (slowest.peek().nanos < nanos) {
+                slowest.poll();
+                slowest.add(new FileTime(file, nanos));
+            }
+        }
+    }
+
+    /**
+     * Gets a counter value.
+     *
+     * @param counter
+     *            counter
+     * @return value
+     */
+    public long get(final Counter counter) {
+
+        return counters.get(counter).get();
+    }
+
+    /**
+     * Gets the time spent in a phase.
+     *
+     * @param phase
+     *            phase
+     * @return time in milliseconds
+     */
+    public long getMillis(final Phase phase) {
+
+        return millis(phases.get(phase).sum());
+    }
+
+    /**
+     * Gets the slowest files, the slowest first.
+     *
+     * @return slowest files
+     */
+    private List<FileTime> getSlowest() {
+
+        final List<FileTime> ret;
+        synchronized (slowest) {
+            ret = new ArrayList<>(slowest);
+        }
+        Collections.sort(ret, Collections.reverseOrder(FASTEST_FIRST));
+        return ret;
+    }
+
+    /**
+     * Gets the slowest files, the slowest first.
+     *
+     * @return slowest files
+     */
+    public List<File> getSlowestFiles() {
+
+        final List<File> ret = new ArrayList<>();
+        for (final FileTime fileTime : getSlowest()) {
+            ret.add(fileTime.file);
+        }
+        return ret;
+    }
+
+    /**
+     * Builds the lines of the summary that is logged at the end of the goal.
+     *
+     * @return summary lines
+     */
+    public List<String> summary() {
+
+        final List<String> lines = new ArrayList<>();
+        lines.add(String.format("Scanned %d file(s), %d skipped, %d changed, %d over limit, %d bytes in, %d bytes out", get(Counter.SCANNED), get(Counter.SKIPPED), get(Counter.CHANGED), get(Counter.OVER_LIMIT), get(Counter.BYTES_IN), get(Counter.BYTES_OUT)));
+        final StringBuilder b = new StringBuilder("Time spent");
+        for (final Phase phase : Phase.values()) {
+            b.append(phase == Phase.values()[0] ? ": " : ", ").append(phase.name().toLowerCase(Locale.ENGLISH)).append(' ').append(getMillis(phase)).append(" ms");
+        }
+        lines.add(b.toString());
+        final List<FileTime> slowestFiles = getSlowest();
+        if (!slowestFiles.isEmpty()) {
+            lines.add("Slowest file(s):");
+            for (final FileTime fileTime : slowestFiles) {
+                lines.add(String.format("  %6d ms %s", millis(fileTime.nanos), fileTime.file));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Formats the metrics as CSV with a <code>type,name,value</code> header.
+     * Times are in milliseconds.
+     *
+     * @return CSV text
+     */
+    public String toCsv() {
+
+        final StringBuilder b = new StringBuilder("type,name,value\n");
+        for (final Counter counter : Counter.values()) {
+            b.append("counter,").append(counter.name().toLowerCase(Locale.ENGLISH)).append(',').append(get(counter)).append('\n');
+        }
+        for (final Phase phase : Phase.values()) {
+            b.append("phase,").append(phase.name().toLowerCase(Locale.ENGLISH)).append(',').append(getMillis(phase)).append('\n');
+        }
+        for (final FileTime fileTime : getSlowest()) {
+            b.append("file,\"").append(fileTime.file.getPath().replace("\"", "\"\"")).append("\",").append(millis(fileTime.nanos)).append('\n');
+        }
+        return b.toString();
+    }
+
+    /**
+     * Formats the metrics as JSON. Times are in milliseconds.
+     *
+     * @return JSON text
+     */
+    public String toJson() {
+
+        final StringBuilder b = new StringBuilder("{\n  \"counters\": {");
+        for (final Counter counter : Counter.values()) {
+            b.append(counter.ordinal() == 0 ? "\n" : ",\n").append("    ").append(jsonString(counter.name().toLowerCase(Locale.ENGLISH))).append(": ").append(get(counter));
+        }
+        b.append("\n  },\n  \"phases\": {");
+        for (final Phase phase : Phase.values()) {
+            b.append(phase.ordinal() == 0 ? "\n" : ",\n").append("    ").append(jsonString(phase.name().toLowerCase(Locale.ENGLISH))).append(": ").append(getMillis(phase));
+        }
+        b.append("\n  },\n  \"slowest\": [");
+        final List<FileTime> slowestFiles = getSlowest();
+        for (int i = 0; i < slowestFiles.size(); ++i) {
+            b.append(i == 0 ? "\n" : ",\n").append("    { \"file\": ").append(jsonString(slowestFiles.get(i).file.getPath())).append(", \"millis\": ").append(millis(slowestFiles.get(i).nanos)).append(" }");
+        }
+        return b.append(slowestFiles.isEmpty() ? "]\n}\n" : "\n  ]\n}\n").toString();
+    }
+
+    /**
+     * Writes the report. The format is CSV if the file name ends with
+     * <code>.csv</code> and JSON otherwise.
+     *
+     * @param reportFile
+     *            report file
+     * @throws IOException
+     *             I/O error
+     */
+    public void writeReport(final File reportFile) throws IOException {
+
+        final String report = reportFile.getName().toLowerCase(Locale.ENGLISH).endsWith(".csv") ? toCsv() : toJson();
+        AtomicFileWriter.write(reportFile, report.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,588 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.eclipse.jdt.core.formatter.CodeFormatter;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.text.edits.TextEdit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.trajano.mojo.m2ecodestyle.LimitPolicy;
+import net.trajano.mojo.m2ecodestyle.internal.FormatMetrics.Counter;
+import net.trajano.mojo.m2ecodestyle.internal.FormatMetrics.Phase;
+
+/**
+ * <p>
+ * Formats individual files in memory. A file is read, skipped if the
+ * {@link FormatCache} knows it is formatted, cleaned up, formatted as a whole
+ * or only in the regions that changed since the base revision, and its line
+ * endings are normalized. Content that differs from what is on disk is passed
+ * on to the {@link Sink}.
+ * </p>
+ * <p>
+ * The pipeline is configured before the first file is formatted. It is then
+ * thread-safe, although each thread must use its own {@link CodeFormatter}.
+ * </p>
+ */
+public final class FormatPipeline {
+
+    /**
+     * Receives the formatted content of the files that changed.
+     */
+    public interface Sink {
+
+        /**
+         * Called when the formatted content of the file differs from what is on
+         * disk.
+         *
+         * @param file
+         *            file that was formatted
+         * @param formattedContent
+         *            formatted content
+         * @throws IOException
+         *             I/O error
+         */
+        void formatted(File file,
+            byte[] formattedContent) throws IOException;
+    }
+
+    /**
+     * State of a timed task that was abandoned before it completed.
+     */
+    private static final int ABANDONED = 3;
+
+    /**
+     * State of a timed task that completed.
+     */
+    private static final int DONE = 2;
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(FormatPipeline.class);
+
+    /**
+     * Maximum number of timed tasks that were abandoned and are still running.
+     * The JDT formatter cannot be interrupted so each of them keeps a thread
+     * and a CPU busy until it completes on its own. Once the maximum is
+     * reached, files are handled as exceeding the {@link #timeout} without
+     * being formatted until one of them completes.
+     */
+    private static final int MAX_ABANDONED = 4;
+
+    /**
+     * State of a timed task that has not started yet.
+     */
+    private static final int QUEUED = 0;
+
+    /**
+     * State of a timed task that is running.
+     */
+    private static final int RUNNING = 1;
+
+    /**
+     * Runs the code formatter over the content on the current thread.
+     *
+     * @param codeFormatter
+     *            code formatter
+     * @param content
+     *            content to format
+     * @param regions
+     *            regions to format or <code>null</code> to format all of the
+     *            content.
+     * @return edits, may be <code>null</code>
+     */
+    private static TextEdit formatNow(final CodeFormatter codeFormatter,
+        final String content,
+        final IRegion[] regions) {
+
+        final int kind = CodeFormatter.K_COMPILATION_UNIT | CodeFormatter.F_INCLUDE_COMMENTS;
+        if (regions == null) {
+            return codeFormatter.format(kind, content, 0, content.length(), 0, null);
+        }
+        return regions.length == 0 ? null : codeFormatter.format(kind, content, regions, 0, null);
+    }
+
+    /**
+     * Number of timed tasks that were abandoned and are still running.
+     */
+    private final AtomicInteger abandoned = new AtomicInteger();
+
+    /**
+     * IDs of the blobs of the files in the base revision, keyed by file. Only
+     * the changed regions of these files are formatted.
+     */
+    private Map<File, String> baseBlobIds;
+
+    /**
+     * Character set used to read and write the files.
+     */
+    private final Charset charset;
+
+    /**
+     * Clean up applied before formatting, <code>null</code> if there is none.
+     */
+    private ProjectCleanUp cleanUp;
+
+    /**
+     * Cache of the files that have already been formatted, <code>null</code> if
+     * the cache is not used.
+     */
+    private FormatCache formatCache;
+
+    /**
+     * Runs the formatter when {@link #timeout} is set. It is created on first
+     * use.
+     */
+    private ExecutorService formatExecutor;
+
+    /**
+     * What to do with files that exceed {@link #maxFileSize} or
+     * {@link #timeout}.
+     */
+    private LimitPolicy limitPolicy = LimitPolicy.WARN;
+
+    /**
+     * Files larger than this number of bytes are not formatted. If this is less
+     * than 1, there is no limit.
+     */
+    private long maxFileSize;
+
+    /**
+     * Metrics the timings and counters are added to.
+     */
+    private final FormatMetrics metrics;
+
+    /**
+     * Git repository the base blobs are read from.
+     */
+    private GitRepository repository;
+
+    /**
+     * Receives the formatted content.
+     */
+    private final Sink sink;
+
+    /**
+     * Code formatters that were abandoned because they timed out. They may
+     * still be running so they are not given back to the
+     * {@link CodeFormatterCache}.
+     */
+    private final Set<CodeFormatter> timedOutFormatters = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Maximum number of seconds the formatter may spend on a single file. If
+     * this is less than 1, there is no limit.
+     */
+    private int timeout;
+
+    /**
+     * Constructs the pipeline.
+     *
+     * @param charset
+     *            character set used to read and write the files
+     * @param metrics
+     *            receives the timings and counters
+     * @param sink
+     *            receives the formatted content of the files that changed
+     */
+    public FormatPipeline(final Charset charset,
+        final FormatMetrics metrics,
+        final Sink sink) {
+
+        this.charset = charset;
+        this.metrics = metrics;
+        this.sink = sink;
+    }
+
+    /**
+     * Drops the code formatter from the lease if it timed out while formatting
+     * the file as it may still be running.
+     *
+     * @param lease
+     *            code formatters of the current thread
+     * @param file
+     *            file that was formatted
+     * @param codeFormatter
+     *            code formatter that was used
+     */
+    public void discardIfTimedOut(final FormatterRegistry.Lease lease,
+        final File file,
+        final CodeFormatter codeFormatter) {
+
+        if (timedOutFormatters.remove(codeFormatter)) {
+            lease.discard(file);
+        }
+    }
+
+    /**
+     * Cleans up and formats the content. If {@link #timeout} is set, the work
+     * runs on the {@link #formatExecutor} and is abandoned if it takes longer
+     * than the timeout. The thread of an abandoned task is not stopped, it
+     * carries on until the formatter completes and at most
+     * {@link #MAX_ABANDONED} of them are allowed at a time.
+     *
+     * @param file
+     *            file being formatted
+     * @param codeFormatter
+     *            code formatter
+     * @param content
+     *            content to format
+     * @return formatted content
+     * @throws BadLocationException
+     *             the edits do not apply to the content
+     * @throws InterruptedException
+     *             interrupted while waiting for the formatter
+     * @throws IOException
+     *             I/O error reading the symbol index or the base blob
+     * @throws TimeoutException
+     *             the formatter took longer than {@link #timeout}, the code
+     *             formatter has been added to {@link #timedOutFormatters}.
+     */
+    private String transform(final File file,
+        final CodeFormatter codeFormatter,
+        final String content) throws BadLocationException,
+        InterruptedException,
+        IOException,
+        TimeoutException {
+
+        if (timeout < 1) {
+            return transformNow(file, codeFormatter, content);
+        }
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+        final Future<String> future = getFormatExecutor().submit(new Callable<String>() {
+
+            @Override
+            public String call() throws BadLocationException,
+                IOException {
+
+                if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    return null;
+                }
+                try {
+                    return transformNow(file, codeFormatter, content);
+                } finally {
+                    if (!state.compareAndSet(RUNNING, DONE)) {
+                        abandoned.decrementAndGet();
+                    }
+                }
+            }
+        });
+        try {
+            return future.get(timeout, TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof BadLocationException) {
+                throw (BadLocationException) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (final TimeoutException
+            | InterruptedException e) {
+            if (state.compareAndSet(RUNNING, ABANDONED)) {
+                abandoned.incrementAndGet();
+            } else {
+                state.compareAndSet(QUEUED, ABANDONED);
+            }
+            future.cancel(true);
+            timedOutFormatters.add(codeFormatter);
+            throw e;
+        }
+    }
+
+    /**
+     * Cleans up and formats the content on the current thread.
+     *
+     * @param file
+     *            file being formatted
+     * @param codeFormatter
+     *            code formatter
+     * @param decoded
+     *            content to format
+     * @return formatted content
+     * @throws BadLocationException
+     *             the edits do not apply to the content
+     * @throws IOException
+     *             I/O error reading the symbol index or the base blob
+     */
+    private String transformNow(final File file,
+        final CodeFormatter codeFormatter,
+        final String decoded) throws BadLocationException,
+        IOException {
+
+        final long start = System.nanoTime();
+        final String content = cleanUp == null ? decoded : cleanUp.cleanUp(file, decoded);
+        final long cleanUpEnd = System.nanoTime();
+        metrics.addTime(Phase.CLEAN_UP, cleanUpEnd - start);
+        final TextEdit edit = formatNow(codeFormatter, content, getChangedRegions(file, content));
+        final String formattedContent;
+        if (edit != null && edit.hasChildren()) {
+            final IDocument doc = new Document(content);
+            edit.apply(doc);
+            formattedContent = doc.get();
+        } else {
+            formattedContent = content;
+        }
+        metrics.addTime(Phase.FORMAT, System.nanoTime() - cleanUpEnd);
+        return formattedContent;
+    }
+
+    /**
+     * Formats an individual file in memory. If the formatted content differs
+     * from what is on disk it is passed on to the {@link Sink}.
+     *
+     * @param file
+     *            file to process
+     * @param codeFormatter
+     *            code formatter for the file
+     * @return <code>true</code> if the formatted content differs from what is
+     *         on disk.
+     * @throws MojoFailureException
+     *             failed processing the file
+     */
+    public boolean format(final File file,
+        final CodeFormatter codeFormatter) throws MojoFailureException {
+
+        final long start = System.nanoTime();
+        try {
+            if (maxFileSize > 0 && file.length() > maxFileSize) {
+                return limitExceeded(file, String.format("%d bytes exceeds the maximum file size of %d bytes", file.length(), maxFileSize));
+            }
+            final byte[] original = Files.readAllBytes(file.toPath());
+            final long readEnd = System.nanoTime();
+            metrics.addTime(Phase.READ, readEnd - start);
+            metrics.add(Counter.BYTES_IN, original.length);
+            if (formatCache != null && formatCache.isFormatted(file, original)) {
+                metrics.add(Counter.SKIPPED, 1);
+                return false;
+            }
+            if (timeout > 0 && abandoned.get() >= MAX_ABANDONED) {
+                return limitExceeded(file, String.format("%d formatters that took longer than %d second(s) are still running", abandoned.get(), timeout));
+            }
+            final String formattedContent;
+            try {
+                formattedContent = transform(file, codeFormatter, new String(original, charset));
+            } catch (final TimeoutException e) {
+                metrics.addTime(Phase.FORMAT, System.nanoTime() - readEnd);
+                return limitExceeded(file, String.format("formatting took longer than %d second(s)", timeout));
+            }
+            final long formatEnd = System.nanoTime();
+
+            final ByteArrayOutputStream formatted = new ByteArrayOutputStream(original.length + 16);
+            try (final OutputStream out = new EolNormalizingStream(formatted)) {
+                out.write(formattedContent.getBytes(charset));
+            }
+            final byte[] formattedBytes = formatted.toByteArray();
+            final long normalizeEnd = System.nanoTime();
+            metrics.addTime(Phase.NORMALIZE, normalizeEnd - formatEnd);
+            metrics.add(Counter.BYTES_OUT, formattedBytes.length);
+            if (formatCache != null) {
+                formatCache.setFormatted(file, formattedBytes);
+            }
+            if (Arrays.equals(original, formattedBytes)) {
+                return false;
+            }
+            sink.formatted(file, formattedBytes);
+            metrics.addTime(Phase.WRITE, System.nanoTime() - normalizeEnd);
+            metrics.add(Counter.CHANGED, 1);
+            return true;
+
+        } catch (final IOException e) {
+            throw new MojoFailureException("IO Exception " + file, e);
+        } catch (final BadLocationException e) {
+            throw new MojoFailureException("Bad Location Exception " + file, e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException("Interrupted while formatting " + file, e);
+        } finally {
+            metrics.fileTime(file, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Gets the regions of the file that differ from the base revision.
+     *
+     * @param file
+     *            file
+     * @param content
+     *            current content of the file
+     * @return changed regions or <code>null</code> if the whole file is to be
+     *         formatted.
+     * @throws IOException
+     *             I/O error reading the base blob
+     */
+    private IRegion[] getChangedRegions(final File file,
+        final String content) throws IOException {
+
+        if (baseBlobIds == null) {
+            return null;
+        }
+        final String baseId = baseBlobIds.get(file);
+        if (baseId == null) {
+            return null;
+        }
+        return LineDiff.changedRegions(new String(repository.readBlob(baseId), charset), content);
+    }
+
+    /**
+     * Gets the executor used to run the formatter when {@link #timeout} is set,
+     * creating it if needed. Its threads are daemon threads so an abandoned
+     * formatter does not stop the JVM from exiting.
+     *
+     * @return format executor
+     */
+    private synchronized ExecutorService getFormatExecutor() {
+
+        if (formatExecutor == null) {
+            formatExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(final Runnable r) {
+
+                    final Thread thread = new Thread(r, "codestyle-formatter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return formatExecutor;
+    }
+
+    /**
+     * Handles a file that exceeded {@link #maxFileSize} or {@link #timeout}
+     * according to the {@link #limitPolicy}.
+     *
+     * @param file
+     *            file
+     * @param reason
+     *            limit that was exceeded
+     * @return <code>false</code> as the file is left as is
+     * @throws MojoFailureException
+     *             if the policy is {@link LimitPolicy#FAIL}
+     */
+    private boolean limitExceeded(final File file,
+        final String reason) throws MojoFailureException {
+
+        metrics.add(Counter.OVER_LIMIT, 1);
+        if (limitPolicy == LimitPolicy.FAIL) {
+            throw new MojoFailureException(file + ": " + reason);
+        }
+        LOG.warn("Skipping {}: {}", file, reason);
+        return false;
+    }
+
+    /**
+     * Only formats the regions of the files that differ from the base revision.
+     * Files without a base blob are formatted as a whole.
+     *
+     * @param repository
+     *            git repository the base blobs are read from
+     * @param baseBlobIds
+     *            IDs of the blobs of the files in the base revision
+     */
+    public void setChangedRegions(final GitRepository repository,
+        final Map<File, String> baseBlobIds) {
+
+        this.repository = repository;
+        this.baseBlobIds = baseBlobIds;
+    }
+
+    /**
+     * Sets the clean up applied before formatting.
+     *
+     * @param cleanUp
+     *            clean up, <code>null</code> if there is none
+     */
+    public void setCleanUp(final ProjectCleanUp cleanUp) {
+
+        this.cleanUp = cleanUp;
+    }
+
+    /**
+     * Sets the cache of the files that have already been formatted.
+     *
+     * @param formatCache
+     *            format cache, <code>null</code> if the cache is not used
+     */
+    public void setFormatCache(final FormatCache formatCache) {
+
+        this.formatCache = formatCache;
+    }
+
+    /**
+     * Sets the limits on the files that are formatted.
+     *
+     * @param maxFileSize
+     *            maximum file size in bytes, no limit if less than 1
+     * @param timeout
+     *            maximum number of seconds per file, no limit if less than 1
+     * @param limitPolicy
+     *            what to do with files that exceed the limits
+     */
+    public void setLimits(final long maxFileSize,
+        final int timeout,
+        final LimitPolicy limitPolicy) {
+
+        this.maxFileSize = maxFileSize;
+        this.timeout = timeout;
+        this.limitPolicy = limitPolicy;
+    }
+
+    /**
+     * Shuts down the {@link #formatExecutor} if it was created. Formatters that
+     * timed out are not waited for.
+     */
+    public synchronized void shutdown() {
+
+        if (formatExecutor != null) {
+            formatExecutor.shutdownNow();
+            formatExecutor = null;
+        }
+    }
+
+    /**
+     * Stores the format cache if it is used. Failure to store the cache is not
+     * fatal as it only affects the performance of subsequent runs.
+     */
+    public void storeFormatCache() {
+
+        if (formatCache == null) {
+            return;
+        }
+        try {
+            formatCache.store();
+        } catch (final IOException e) {
+            LOG.warn("Unable to store format cache", e);
+        }
+    }
+}
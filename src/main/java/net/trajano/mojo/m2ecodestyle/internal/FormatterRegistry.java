@@ -0,0 +1,157 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.formatter.CodeFormatter;
+
+/**
+ * <p>
+ * Code formatters keyed by the extension of the files they format. Each worker
+ * thread takes a {@link Lease} to get the code formatters for the files it
+ * processes as {@link CodeFormatter} instances are not thread-safe.
+ * </p>
+ * <p>
+ * The registry is not modified once the workers have started.
+ * </p>
+ */
+public final class FormatterRegistry {
+
+    /**
+     * Code formatters of a single thread. They are acquired from the
+     * {@link CodeFormatterCache} the first time a file with the extension is
+     * seen and given back by {@link #release()}.
+     * <p>
+     * This class is not thread-safe.
+     * </p>
+     */
+    public final class Lease {
+
+        /**
+         * Acquired code formatters keyed by extension.
+         */
+        private final Map<String, CodeFormatter> acquired = new HashMap<>();
+
+        /**
+         * Drops the code formatter used for the file without giving it back,
+         * e.g. because it timed out and may still be running. The next file
+         * with the same extension gets a new one.
+         *
+         * @param file
+         *            file
+         */
+        public void discard(final File file) {
+
+            acquired.remove(getExtension(file));
+        }
+
+        /**
+         * Gets the code formatter for the file.
+         *
+         * @param file
+         *            file
+         * @return code formatter or <code>null</code> if there is none for the
+         *         extension of the file.
+         */
+        public CodeFormatter get(final File file) {
+
+            final String extension = getExtension(file);
+            final CodeFormatterCache formatters = caches.get(extension);
+            if (formatters == null) {
+                return null;
+            }
+            CodeFormatter codeFormatter = acquired.get(extension);
+            if (codeFormatter == null) {
+                codeFormatter = formatters.acquire();
+                acquired.put(extension, codeFormatter);
+            }
+            return codeFormatter;
+        }
+
+        /**
+         * Gives back the acquired code formatters.
+         */
+        public void release() {
+
+            for (final Map.Entry<String, CodeFormatter> entry : acquired.entrySet()) {
+                caches.get(entry.getKey()).release(entry.getValue());
+            }
+            acquired.clear();
+        }
+    }
+
+    /**
+     * Gets the extension of the file in lower case.
+     *
+     * @param file
+     *            file
+     * @return extension without the dot, empty if there is none.
+     */
+    public static String getExtension(final File file) {
+
+        final String name = file.getName();
+        final int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Cached code formatters keyed by extension.
+     */
+    private final Map<String, CodeFormatterCache> caches = new LinkedHashMap<>();
+
+    /**
+     * Gets the registered extensions.
+     *
+     * @return extensions in the order they were registered
+     */
+    public Set<String> getExtensions() {
+
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * Gets the options of all the code formatters, used to tell whether the
+     * output of the formatters may have changed.
+     *
+     * @return options with the keys prefixed by the extension and a colon
+     */
+    public Map<String, Object> getOptions() {
+
+        final Map<String, Object> options = new HashMap<>();
+        for (final Map.Entry<String, CodeFormatterCache> entry : caches.entrySet()) {
+            for (final Map.Entry<?, ?> option : entry.getValue().getOptions().entrySet()) {
+                options.put(entry.getKey() + ":" + option.getKey(), option.getValue());
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Starts a lease for the current thread.
+     *
+     * @return lease
+     */
+    public Lease lease() {
+
+        return new Lease();
+    }
+
+    /**
+     * Registers the code formatters for an extension.
+     *
+     * @param extension
+     *            extension without the dot
+     * @param formatters
+     *            cached code formatters
+     */
+    public void register(final String extension,
+        final CodeFormatterCache formatters) {
+
+        caches.put(extension.toLowerCase(Locale.ENGLISH), formatters);
+    }
+}
@@ -0,0 +1,275 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Attributes of the paths of a git work tree as set by the
+ * <code>.gitattributes</code> files of the work tree and
+ * <code>info/attributes</code> in the git directory.
+ * </p>
+ * <p>
+ * Set attributes have the value <code>true</code> and unset attributes have the
+ * value <code>false</code>. Macros other than the built in <code>binary</code>
+ * and quoted patterns are not supported.
+ * </p>
+ */
+public final class GitAttributes {
+
+    /**
+     * Line of an attributes file.
+     */
+    private static final class Rule {
+
+        /**
+         * Attributes, a <code>null</code> value makes the attribute
+         * unspecified.
+         */
+        private final Map<String, String> attributes;
+
+        /**
+         * <code>true</code> if the pattern only matches the last path
+         * component.
+         */
+        private final boolean basename;
+
+        /**
+         * Pattern.
+         */
+        private final Pattern pattern;
+
+        /**
+         * Constructs the rule.
+         *
+         * @param pattern
+         *            pattern
+         * @param basename
+         *            <code>true</code> if the pattern only matches the last
+         *            path component
+         * @param attributes
+         *            attributes
+         */
+        Rule(final Pattern pattern,
+            final boolean basename,
+            final Map<String, String> attributes) {
+
+            this.pattern = pattern;
+            this.basename = basename;
+            this.attributes = attributes;
+        }
+
+        /**
+         * Checks if the rule applies to the path.
+         *
+         * @param path
+         *            path relative to the directory of the attributes file
+         * @return <code>true</code> if the rule applies
+         */
+        boolean matches(final String path) {
+
+            if (basename) {
+                return pattern.matcher(path.substring(path.lastIndexOf('/') + 1)).matches();
+            }
+            return pattern.matcher(path).matches();
+        }
+    }
+
+    /**
+     * Name of the attributes files in the work tree.
+     */
+    private static final String ATTRIBUTES_FILE = ".gitattributes";
+
+    /**
+     * Applies the rules that match the path.
+     *
+     * @param rules
+     *            rules in the order they were read
+     * @param path
+     *            path relative to the directory of the rules
+     * @param attributes
+     *            receives the attributes
+     */
+    private static void apply(final List<Rule> rules,
+        final String path,
+        final Map<String, String> attributes) {
+
+        for (final Rule rule : rules) {
+            if (!rule.matches(path)) {
+                continue;
+            }
+            for (final Map.Entry<String, String> entry : rule.attributes.entrySet()) {
+                if (entry.getValue() == null) {
+                    attributes.remove(entry.getKey());
+                } else {
+                    attributes.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts a git wildcard pattern to a regular expression. A <code>*</code>
+     * does not match <code>/</code>, <code>**</code> matches any number of
+     * directories.
+     *
+     * @param glob
+     *            wildcard pattern
+     * @return regular expression
+     */
+    private static Pattern compile(final String glob) {
+
+        final StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            final char c = glob.charAt(i);
+            if (glob.startsWith("**/", i) && (i == 0 || glob.charAt(i - 1) == '/')) {
+                regex.append("(?:.*/)?");
+                i += 3;
+                continue;
+            } else if (glob.startsWith("**", i) && i + 2 == glob.length() && i > 0 && glob.charAt(i - 1) == '/') {
+                regex.append(".*");
+                i += 2;
+                continue;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if (c == '[' && glob.indexOf(']', i + 2) != -1) {
+                final int end = glob.indexOf(']', i + 2);
+                String body = glob.substring(i + 1, end);
+                if (body.startsWith("!")) {
+                    body = "^" + body.substring(1);
+                }
+                regex.append('[').append(body.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                i = end;
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                ++i;
+                regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+            ++i;
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Reads the rules of an attributes file.
+     *
+     * @param file
+     *            attributes file
+     * @return rules, empty if the file does not exist
+     * @throws IOException
+     *             I/O error
+     */
+    private static List<Rule> read(final File file) throws IOException {
+
+        final List<Rule> rules = new ArrayList<>();
+        if (!file.isFile()) {
+            return rules;
+        }
+        for (final String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            final String[] tokens = line.trim().split("\\s+");
+            String glob = tokens[0];
+            if (glob.isEmpty() || glob.startsWith("#") || glob.startsWith("\"") || glob.startsWith("[attr]") || glob.endsWith("/")) {
+                continue;
+            }
+            final Map<String, String> attributes = new LinkedHashMap<>();
+            for (int i = 1; i < tokens.length; ++i) {
+                final String token = tokens[i];
+                if ("binary".equals(token)) {
+                    attributes.put("diff", "false");
+                    attributes.put("merge", "false");
+                    attributes.put("text", "false");
+                } else if (token.startsWith("-")) {
+                    attributes.put(token.substring(1), "false");
+                } else if (token.startsWith("!")) {
+                    attributes.put(token.substring(1), null);
+                } else if (token.indexOf('=') != -1) {
+                    attributes.put(token.substring(0, token.indexOf('=')), token.substring(token.indexOf('=') + 1));
+                } else {
+                    attributes.put(token, "true");
+                }
+            }
+            final boolean basename = glob.indexOf('/') == -1;
+            if (glob.startsWith("/")) {
+                glob = glob.substring(1);
+            }
+            rules.add(new Rule(compile(glob), basename, attributes));
+        }
+        return rules;
+    }
+
+    /**
+     * Rules of <code>info/attributes</code>, they take precedence over the work
+     * tree.
+     */
+    private final List<Rule> infoRules;
+
+    /**
+     * Rules of the <code>.gitattributes</code> files keyed by the path of their
+     * directory relative to the work tree, loaded lazily.
+     */
+    private final Map<String, List<Rule>> rules = new HashMap<>();
+
+    /**
+     * Work tree root.
+     */
+    private final File workTree;
+
+    /**
+     * Constructs the attributes.
+     *
+     * @param workTree
+     *            work tree root
+     * @param commonDir
+     *            git directory containing <code>info/attributes</code>
+     * @throws IOException
+     *             I/O error
+     */
+    public GitAttributes(final File workTree,
+        final File commonDir) throws IOException {
+
+        this.workTree = workTree;
+        infoRules = read(new File(commonDir, "info/attributes"));
+    }
+
+    /**
+     * Gets the attributes of a path. Deeper <code>.gitattributes</code> files
+     * override the ones of their parent directories and later lines of a file
+     * override earlier ones.
+     *
+     * @param path
+     *            path relative to the work tree using <code>/</code> as the
+     *            separator
+     * @return attributes keyed by name, unspecified attributes are left out.
+     * @throws IOException
+     *             I/O error
+     */
+    public Map<String, String> get(final String path) throws IOException {
+
+        final Map<String, String> attributes = new HashMap<>();
+        int start = 0;
+        do {
+            final String dir = path.substring(0, start);
+            List<Rule> dirRules = rules.get(dir);
+            if (dirRules == null) {
+                dirRules = read(new File(workTree, dir + ATTRIBUTES_FILE));
+                rules.put(dir, dirRules);
+            }
+            apply(dirRules, path.substring(start), attributes);
+            start = path.indexOf('/', start) + 1;
+        } while (start != 0);
+        apply(infoRules, path, attributes);
+        return attributes;
+    }
+}
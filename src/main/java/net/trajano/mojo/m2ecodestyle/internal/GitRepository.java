@@ -0,0 +1,1237 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>
+ * Minimal read-only access to a local git repository. It reads the index, the
+ * refs and the object store (loose objects and pack files) directly so neither
+ * a git binary nor network access is needed.
+ * </p>
+ * <p>
+ * Only what is needed to determine which files differ from a revision is
+ * supported. The end of line conversion that <code>core.autocrlf</code> and the
+ * <code>text</code> and <code>eol</code> attributes apply when a file is added
+ * is applied before comparing, so a work tree checked out with CRLF line
+ * endings does not show every file as changed. Other content filters such as
+ * <code>filter</code> and <code>ident</code> are not applied, so files affected
+ * by them are reported as changed.
+ * </p>
+ */
+public final class GitRepository {
+
+    /**
+     * Index entry for a file.
+     */
+    private static final class IndexEntry {
+
+        /**
+         * Object ID.
+         */
+        private final String id;
+
+        /**
+         * Modification time in seconds.
+         */
+        private final long mtimeSeconds;
+
+        /**
+         * Size of the file.
+         */
+        private final long size;
+
+        /**
+         * Constructs the entry.
+         *
+         * @param id
+         *            object ID
+         * @param mtimeSeconds
+         *            modification time in seconds
+         * @param size
+         *            size of the file
+         */
+        IndexEntry(final String id,
+            final long mtimeSeconds,
+            final long size) {
+
+            this.id = id;
+            this.mtimeSeconds = mtimeSeconds;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Pack file along with its index.
+     */
+    private static final class Pack {
+
+        /**
+         * Pack index.
+         */
+        private final ByteBuffer idx;
+
+        /**
+         * Start of the object names table in the index.
+         */
+        private final int namesOffset;
+
+        /**
+         * Number of objects in the pack.
+         */
+        private final int objectCount;
+
+        /**
+         * Pack file.
+         */
+        private final File packFile;
+
+        /**
+         * Pack index version, 1 or 2.
+         */
+        private final int version;
+
+        /**
+         * Loads the pack index.
+         *
+         * @param idxFile
+         *            pack index file
+         * @throws IOException
+         *             I/O error
+         */
+        Pack(final File idxFile) throws IOException {
+
+            try (final RandomAccessFile raf = new RandomAccessFile(idxFile, "r")) {
+                idx = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+            packFile = new File(idxFile.getParentFile(), idxFile.getName().replaceFirst("\\.idx$", ".pack"));
+            if (idx.getInt(0) == PACK_IDX_MAGIC) {
+                version = idx.getInt(4);
+                if (version != 2) {
+                    throw new IOException("unsupported pack index version " + version + " in " + idxFile);
+                }
+                objectCount = idx.getInt(8 + 255 * 4);
+                namesOffset = 8 + 256 * 4;
+            } else {
+                version = 1;
+                objectCount = idx.getInt(255 * 4);
+                namesOffset = 256 * 4;
+            }
+        }
+
+        /**
+         * Finds the offset of the object in the pack.
+         *
+         * @param id
+         *            object ID
+         * @return offset or -1 if the object is not in the pack.
+         */
+        long find(final byte[] id) {
+
+            final int fanout = version == 2 ? 8 : 0;
+            final int first = id[0] & 0xff;
+            int low = first == 0 ? 0 : idx.getInt(fanout + (first - 1) * 4);
+            int high = idx.getInt(fanout + first * 4) - 1;
+            final int stride = version == 2 ? 20 : 24;
+            final int nameStart = version == 2 ? 0 : 4;
+            while (low <= high) {
+                final int mid = low + high >>> 1;
+                final int cmp = compare(id, namesOffset + mid * stride + nameStart);
+                if (cmp == 0) {
+                    return offsetOf(mid);
+                } else if (cmp < 0) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Compares the ID with the name at the given position of the index.
+         *
+         * @param id
+         *            object ID
+         * @param pos
+         *            position in the index
+         * @return comparison result
+         */
+        private int compare(final byte[] id,
+            final int pos) {
+
+            for (int i = 0; i < 20; ++i) {
+                final int c = (id[i] & 0xff) - (idx.get(pos + i) & 0xff);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Gets the pack offset of the n-th object in the index.
+         *
+         * @param n
+         *            position of the object in the index
+         * @return offset
+         */
+        private long offsetOf(final int n) {
+
+            if (version == 1) {
+                return idx.getInt(namesOffset + n * 24) & 0xffffffffL;
+            }
+            final int offsetsStart = namesOffset + objectCount * 24;
+            final int offset = idx.getInt(offsetsStart + n * 4);
+            if ((offset & 0x80000000) == 0) {
+                return offset;
+            }
+            return idx.getLong(offsetsStart + objectCount * 4 + (offset & 0x7fffffff) * 8);
+        }
+    }
+
+    /**
+     * Delta against an object identified by its offset in the same pack.
+     */
+    private static final int OBJ_OFS_DELTA = 6;
+
+    /**
+     * Delta against an object identified by its ID.
+     */
+    private static final int OBJ_REF_DELTA = 7;
+
+    /**
+     * Pack index version 2 magic number.
+     */
+    private static final int PACK_IDX_MAGIC = 0xff744f63;
+
+    /**
+     * Prefixes that are tried when resolving a ref name.
+     */
+    private static final String[] REF_PREFIXES = {
+        "",
+        "refs/",
+        "refs/tags/",
+        "refs/heads/",
+        "refs/remotes/"
+    };
+
+    /**
+     * Object types in pack files.
+     */
+    private static final String[] TYPE_NAMES = {
+        null,
+        "commit",
+        "tree",
+        "blob",
+        "tag"
+    };
+
+    /**
+     * Applies a git delta to the base object.
+     *
+     * @param base
+     *            base object content
+     * @param delta
+     *            delta
+     * @return resulting content
+     * @throws IOException
+     *             corrupt delta
+     */
+    private static byte[] applyDelta(final byte[] base,
+        final byte[] delta) throws IOException {
+
+        final int[] pos = {
+            0
+        };
+        final long baseSize = readDeltaSize(delta, pos);
+        if (baseSize != base.length) {
+            throw new IOException("delta base size mismatch");
+        }
+        final byte[] result = new byte[(int) readDeltaSize(delta, pos)];
+        int out = 0;
+        int p = pos[0];
+        while (p < delta.length) {
+            final int op = delta[p++] & 0xff;
+            if ((op & 0x80) != 0) {
+                int copyOffset = 0;
+                int copySize = 0;
+                for (int i = 0; i < 4; ++i) {
+                    if ((op & 1 << i) != 0) {
+                        copyOffset |= (delta[p++] & 0xff) << i * 8;
+                    }
+                }
+                for (int i = 0; i < 3; ++i) {
+                    if ((op & 0x10 << i) != 0) {
+                        copySize |= (delta[p++] & 0xff) << i * 8;
+                    }
+                }
+                if (copySize == 0) {
+                    copySize = 0x10000;
+                }
+                System.arraycopy(base, copyOffset, result, out, copySize);
+                out += copySize;
+            } else if (op != 0) {
+                System.arraycopy(delta, p, result, out, op);
+                p += op;
+                out += op;
+            } else {
+                throw new IOException("invalid delta opcode");
+            }
+        }
+        if (out != result.length) {
+            throw new IOException("delta result size mismatch");
+        }
+        return result;
+    }
+
+    /**
+     * Computes the git blob ID for the content.
+     *
+     * @param content
+     *            file content
+     * @return object ID
+     */
+    public static String blobId(final byte[] content) {
+
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+            return toHex(digest.digest(content), 0);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks if the array contains the byte.
+     *
+     * @param bytes
+     *            array
+     * @param b
+     *            byte to find
+     * @return <code>true</code> if the byte is found
+     */
+    private static boolean contains(final byte[] bytes,
+        final byte b) {
+
+        for (final byte c : bytes) {
+            if (c == b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the git repository that contains the directory.
+     *
+     * @param dir
+     *            directory
+     * @return repository or <code>null</code> if the directory is not inside a
+     *         git work tree.
+     * @throws IOException
+     *             I/O error
+     */
+    public static GitRepository find(final File dir) throws IOException {
+
+        for (File current = dir.getAbsoluteFile(); current != null; current = current.getParentFile()) {
+            final File dotGit = new File(current, ".git");
+            if (dotGit.isDirectory()) {
+                return new GitRepository(current, dotGit);
+            } else if (dotGit.isFile()) {
+                final String content = new String(Files.readAllBytes(dotGit.toPath()), StandardCharsets.UTF_8).trim();
+                if (!content.startsWith("gitdir:")) {
+                    throw new IOException("unrecognized .git file " + dotGit);
+                }
+                final File gitDir = new File(content.substring("gitdir:".length()).trim());
+                return new GitRepository(current, gitDir.isAbsolute() ? gitDir : new File(current, gitDir.getPath()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a hex string into bytes.
+     *
+     * @param hex
+     *            hex string
+     * @return bytes
+     */
+    private static byte[] fromHex(final String hex) {
+
+        final byte[] ret = new byte[hex.length() / 2];
+        for (int i = 0; i < ret.length; ++i) {
+            ret[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return ret;
+    }
+
+    /**
+     * Finds the byte in the array.
+     *
+     * @param bytes
+     *            array
+     * @param b
+     *            byte to find
+     * @param from
+     *            start position
+     * @return position
+     * @throws IOException
+     *             byte not found
+     */
+    private static int indexOf(final byte[] bytes,
+        final byte b,
+        final int from) throws IOException {
+
+        for (int i = from; i < bytes.length; ++i) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        throw new IOException("corrupt tree object");
+    }
+
+    /**
+     * Inflates data from the current position of the pack file.
+     *
+     * @param raf
+     *            pack file
+     * @param size
+     *            inflated size
+     * @return inflated data
+     * @throws IOException
+     *             I/O error
+     */
+    private static byte[] inflate(final RandomAccessFile raf,
+        final long size) throws IOException {
+
+        final byte[] result = new byte[(int) size];
+        final byte[] input = new byte[8192];
+        final Inflater inflater = new Inflater();
+        try {
+            int out = 0;
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    final int n = raf.read(input);
+                    if (n < 0) {
+                        throw new IOException("unexpected end of pack");
+                    }
+                    inflater.setInput(input, 0, n);
+                }
+                out += inflater.inflate(result, out, result.length - out);
+                if (inflater.needsDictionary()) {
+                    throw new IOException("unexpected dictionary in pack");
+                }
+            }
+            return result;
+        } catch (final DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Checks if the string is a full object ID.
+     *
+     * @param s
+     *            string to check
+     * @return <code>true</code> if it is 40 hex digits.
+     */
+    private static boolean isObjectId(final String s) {
+
+        return s.matches("[0-9a-f]{40}");
+    }
+
+    /**
+     * Checks if the content has a CR that is not followed by a LF. Such content
+     * is not converted when the conversion is automatic.
+     *
+     * @param content
+     *            content
+     * @return <code>true</code> if there is a lone CR
+     */
+    private static boolean hasLoneCr(final byte[] content) {
+
+        for (int i = 0; i < content.length; ++i) {
+            if (content[i] == '\r' && (i + 1 == content.length || content[i + 1] != '\n')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the last value of a key in a git configuration file.
+     *
+     * @param file
+     *            configuration file
+     * @param section
+     *            section name in lower case, sections with a subsection are not
+     *            matched
+     * @param key
+     *            key name
+     * @return value, <code>true</code> if the key has no value and
+     *         <code>null</code> if the key is not set.
+     * @throws IOException
+     *             I/O error
+     */
+    private static String readConfig(final File file,
+        final String section,
+        final String key) throws IOException {
+
+        if (!file.isFile()) {
+            return null;
+        }
+        String value = null;
+        String currentSection = null;
+        for (final String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            final String trimmed = line.trim();
+            if (trimmed.startsWith("[")) {
+                final int end = trimmed.indexOf(']');
+                currentSection = end == -1 ? null : trimmed.substring(1, end).trim().toLowerCase(Locale.ENGLISH);
+                continue;
+            }
+            if (!section.equals(currentSection)) {
+                continue;
+            }
+            final int eq = trimmed.indexOf('=');
+            if (!key.equalsIgnoreCase((eq == -1 ? trimmed : trimmed.substring(0, eq)).trim())) {
+                continue;
+            }
+            if (eq == -1) {
+                value = "true";
+                continue;
+            }
+            final StringBuilder b = new StringBuilder();
+            boolean quoted = false;
+            for (final char c : trimmed.substring(eq + 1).toCharArray()) {
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (!quoted && (c == '#' || c == ';')) {
+                    break;
+                } else {
+                    b.append(c);
+                }
+            }
+            value = b.toString().trim();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a size in the delta header format.
+     *
+     * @param delta
+     *            delta
+     * @param pos
+     *            position, updated after reading
+     * @return size
+     */
+    private static long readDeltaSize(final byte[] delta,
+        final int[] pos) {
+
+        long size = 0;
+        int shift = 0;
+        int c;
+        do {
+            c = delta[pos[0]++] & 0xff;
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        return size;
+    }
+
+    /**
+     * Reads the stream fully.
+     *
+     * @param is
+     *            input stream
+     * @return content
+     * @throws IOException
+     *             I/O error
+     */
+    private static byte[] readFully(final InputStream is) throws IOException {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8192];
+        int n;
+        while ((n = is.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Removes the CR of each CRLF.
+     *
+     * @param content
+     *            content
+     * @return content with LF line endings
+     */
+    private static byte[] stripCr(final byte[] content) {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(content.length);
+        for (int i = 0; i < content.length; ++i) {
+            if (content[i] != '\r' || i + 1 == content.length || content[i + 1] != '\n') {
+                out.write(content[i]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Converts 20 bytes starting at the offset to hex.
+     *
+     * @param bytes
+     *            bytes
+     * @param offset
+     *            offset
+     * @return hex string
+     */
+    private static String toHex(final byte[] bytes,
+        final int offset) {
+
+        final StringBuilder b = new StringBuilder(40);
+        for (int i = offset; i < offset + 20; ++i) {
+            b.append(Character.forDigit(bytes[i] >> 4 & 0xf, 16)).append(Character.forDigit(bytes[i] & 0xf, 16));
+        }
+        return b.toString();
+    }
+
+    /**
+     * Directory containing the shared refs and objects. This differs from
+     * {@link #gitDir} for linked work trees.
+     */
+    private final File commonDir;
+
+    /**
+     * Git directory.
+     */
+    private final File gitDir;
+
+    /**
+     * Object directories, including alternates.
+     */
+    private final List<File> objectDirs = new ArrayList<>();
+
+    /**
+     * Pack files, loaded lazily.
+     */
+    private List<Pack> packs;
+
+    /**
+     * Work tree root.
+     */
+    private final File workTree;
+
+    /**
+     * Constructs the repository.
+     *
+     * @param workTree
+     *            work tree root
+     * @param gitDir
+     *            git directory
+     * @throws IOException
+     *             I/O error
+     */
+    private GitRepository(final File workTree,
+        final File gitDir) throws IOException {
+
+        this.workTree = workTree;
+        this.gitDir = gitDir;
+        final File commonDirFile = new File(gitDir, "commondir");
+        if (commonDirFile.isFile()) {
+            final File dir = new File(new String(Files.readAllBytes(commonDirFile.toPath()), StandardCharsets.UTF_8).trim());
+            commonDir = dir.isAbsolute() ? dir : new File(gitDir, dir.getPath());
+        } else {
+            commonDir = gitDir;
+        }
+        final File objects = new File(commonDir, "objects");
+        objectDirs.add(objects);
+        final File alternates = new File(objects, "info/alternates");
+        if (alternates.isFile()) {
+            for (final String line : Files.readAllLines(alternates.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                    final File alternate = new File(line.trim());
+                    objectDirs.add(alternate.isAbsolute() ? alternate : new File(objects, line.trim()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the IDs of the blobs of the files in the given revision.
+     *
+     * @param revision
+     *            revision, such as <code>HEAD</code>, a branch, a tag or a
+     *            commit ID.
+     * @param files
+     *            files to look up
+     * @return blob IDs keyed by file, files that are not in the revision are
+     *         left out.
+     * @throws IOException
+     *             I/O error or the revision cannot be resolved
+     */
+    public Map<File, String> blobIds(final String revision,
+        final Collection<File> files) throws IOException {
+
+        final String commitId = resolve(revision);
+        if (commitId == null) {
+            throw new IOException("unable to resolve revision " + revision);
+        }
+        final Map<String, String> tree = readTree(commitId);
+        final Map<File, String> ids = new HashMap<>();
+        for (final File file : files) {
+            final String path = path(file);
+            if (path != null && tree.containsKey(path)) {
+                ids.put(file, tree.get(path));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Determines which of the candidate files differ from the given revision. A
+     * file is considered changed if it is not in the revision or if its content
+     * differs. The index is used to avoid hashing files whose stat information
+     * shows they have not been modified.
+     *
+     * @param revision
+     *            revision to compare against, such as <code>HEAD</code>, a
+     *            branch, a tag or a commit ID.
+     * @param candidates
+     *            files to check
+     * @return files that differ, in the order of the candidates
+     * @throws IOException
+     *             I/O error or the revision cannot be resolved
+     */
+    public Set<File> changedFiles(final String revision,
+        final Collection<File> candidates) throws IOException {
+
+        final String commitId = resolve(revision);
+        if (commitId == null) {
+            throw new IOException("unable to resolve revision " + revision);
+        }
+        final Map<String, String> base = readTree(commitId);
+        final Map<String, IndexEntry> index = readIndex();
+        final File indexFile = new File(gitDir, "index");
+        final long indexSeconds = indexFile.lastModified() / 1000;
+        final GitAttributes gitAttributes = new GitAttributes(workTree, commonDir);
+        final String autoCrlf = readAutoCrlf();
+
+        final Set<File> changed = new LinkedHashSet<>();
+        for (final File file : candidates) {
+            final String path = path(file);
+            if (path == null) {
+                continue;
+            }
+            final String baseId = base.get(path);
+            if (baseId == null) {
+                changed.add(file);
+                continue;
+            }
+            final IndexEntry entry = index.get(path);
+            if (entry != null && entry.id.equals(baseId)) {
+                final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                final long mtimeSeconds = attributes.lastModifiedTime().to(TimeUnit.SECONDS);
+                if (attributes.size() == entry.size && mtimeSeconds == entry.mtimeSeconds && mtimeSeconds < indexSeconds) {
+                    continue;
+                }
+            }
+            final byte[] content = clean(Files.readAllBytes(file.toPath()), gitAttributes.get(path), autoCrlf, baseId);
+            if (!baseId.equals(blobId(content))) {
+                changed.add(file);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Applies the end of line conversion that git applies when the file is
+     * added. CRLF is converted to LF if the <code>text</code> attribute is set,
+     * implied by the <code>eol</code> attribute or automatic. The conversion is
+     * automatic if <code>text</code> is <code>auto</code>, or unspecified and
+     * <code>core.autocrlf</code> is enabled. Automatic conversion skips content
+     * that looks binary and files that have CRs in the base revision.
+     *
+     * @param content
+     *            work tree content
+     * @param attributes
+     *            attributes of the path
+     * @param autoCrlf
+     *            value of <code>core.autocrlf</code>
+     * @param baseId
+     *            blob ID of the file in the base revision
+     * @return content as it would be stored, the same instance if it is not
+     *         converted.
+     * @throws IOException
+     *             I/O error reading the base blob
+     */
+    private byte[] clean(final byte[] content,
+        final Map<String, String> attributes,
+        final String autoCrlf,
+        final String baseId) throws IOException {
+
+        String text = attributes.get("text");
+        final String crlf = attributes.get("crlf");
+        if (text == null && crlf != null) {
+            // deprecated crlf attribute, crlf=input is the same as text
+            text = "false".equals(crlf) ? "false" : "true";
+        }
+        if (text == null && attributes.containsKey("eol")) {
+            text = "true";
+        }
+        final boolean auto;
+        if ("true".equals(text)) {
+            auto = false;
+        } else if ("auto".equals(text) || text == null && !"false".equals(autoCrlf)) {
+            auto = true;
+        } else {
+            return content;
+        }
+        if (!contains(content, (byte) '\r')) {
+            return content;
+        }
+        if (auto && (contains(content, (byte) 0) || hasLoneCr(content) || contains(readBlob(baseId), (byte) '\r'))) {
+            return content;
+        }
+        return stripCr(content);
+    }
+
+    /**
+     * Gets the work tree root.
+     *
+     * @return work tree root
+     */
+    public File getWorkTree() {
+
+        return workTree;
+    }
+
+    /**
+     * Loads the pack files.
+     *
+     * @return pack files
+     * @throws IOException
+     *             I/O error
+     */
+    private synchronized List<Pack> packs() throws IOException {
+
+        if (packs == null) {
+            packs = new ArrayList<>();
+            for (final File objects : objectDirs) {
+                final File[] idxFiles = new File(objects, "pack").listFiles();
+                if (idxFiles == null) {
+                    continue;
+                }
+                for (final File idxFile : idxFiles) {
+                    if (idxFile.getName().endsWith(".idx")) {
+                        packs.add(new Pack(idxFile));
+                    }
+                }
+            }
+        }
+        return packs;
+    }
+
+    /**
+     * Gets the path of the file relative to the work tree as used in trees.
+     *
+     * @param file
+     *            file
+     * @return path or <code>null</code> if the file is not in the work tree.
+     * @throws IOException
+     *             I/O error
+     */
+    private String path(final File file) throws IOException {
+
+        final String workTreePath = workTree.getCanonicalPath() + File.separator;
+        final String canonical = file.getCanonicalPath();
+        if (!canonical.startsWith(workTreePath)) {
+            return null;
+        }
+        return canonical.substring(workTreePath.length()).replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Reads <code>core.autocrlf</code> from the system, global and repository
+     * configuration files. Included files are not read.
+     *
+     * @return <code>true</code>, <code>input</code> or <code>false</code>
+     * @throws IOException
+     *             I/O error
+     */
+    private String readAutoCrlf() throws IOException {
+
+        final List<File> configs = new ArrayList<>();
+        if (System.getenv("GIT_CONFIG_NOSYSTEM") == null) {
+            final String systemConfig = System.getenv("GIT_CONFIG_SYSTEM");
+            configs.add(new File(systemConfig == null ? "/etc/gitconfig" : systemConfig));
+        }
+        final String globalConfig = System.getenv("GIT_CONFIG_GLOBAL");
+        if (globalConfig == null) {
+            final String xdgConfigHome = System.getenv("XDG_CONFIG_HOME");
+            configs.add(xdgConfigHome == null ? new File(System.getProperty("user.home"), ".config/git/config") : new File(xdgConfigHome, "git/config"));
+            configs.add(new File(System.getProperty("user.home"), ".gitconfig"));
+        } else {
+            configs.add(new File(globalConfig));
+        }
+        configs.add(new File(commonDir, "config"));
+
+        String autoCrlf = null;
+        for (final File config : configs) {
+            final String value = readConfig(config, "core", "autocrlf");
+            if (value != null) {
+                autoCrlf = value.toLowerCase(Locale.ENGLISH);
+            }
+        }
+        if ("input".equals(autoCrlf)) {
+            return autoCrlf;
+        } else if (Arrays.asList("true", "yes", "on", "1").contains(autoCrlf)) {
+            return "true";
+        }
+        return "false";
+    }
+
+    /**
+     * Reads the content of a blob.
+     *
+     * @param id
+     *            blob ID
+     * @return blob content
+     * @throws IOException
+     *             I/O error or the object is missing or not a blob
+     */
+    public byte[] readBlob(final String id) throws IOException {
+
+        return readObject(id, "blob");
+    }
+
+    /**
+     * Reads the stage 0 entries of the index.
+     *
+     * @return entries keyed by path
+     * @throws IOException
+     *             I/O error
+     */
+    private Map<String, IndexEntry> readIndex() throws IOException {
+
+        final Map<String, IndexEntry> entries = new HashMap<>();
+        final File indexFile = new File(gitDir, "index");
+        if (!indexFile.isFile()) {
+            return entries;
+        }
+        final ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+        if (buf.getInt() != 0x44495243) {
+            throw new IOException("not a git index " + indexFile);
+        }
+        final int version = buf.getInt();
+        if (version < 2 || version > 4) {
+            throw new IOException("unsupported index version " + version);
+        }
+        final int count = buf.getInt();
+        final byte[] id = new byte[20];
+        byte[] previousName = new byte[0];
+        for (int i = 0; i < count; ++i) {
+            final int entryStart = buf.position();
+            buf.position(entryStart + 8);
+            final long mtimeSeconds = buf.getInt() & 0xffffffffL;
+            buf.position(entryStart + 36);
+            final long size = buf.getInt() & 0xffffffffL;
+            buf.get(id);
+            final int flags = buf.getShort() & 0xffff;
+            if (version >= 3 && (flags & 0x4000) != 0) {
+                buf.getShort();
+            }
+            final byte[] name;
+            if (version == 4) {
+                int c = buf.get() & 0xff;
+                long strip = c & 0x7f;
+                while ((c & 0x80) != 0) {
+                    c = buf.get() & 0xff;
+                    strip = (strip + 1 << 7) + (c & 0x7f);
+                }
+                final int start = buf.position();
+                while (buf.get() != 0) {
+                    // find the terminator
+                }
+                final int keep = previousName.length - (int) strip;
+                name = new byte[keep + buf.position() - 1 - start];
+                System.arraycopy(previousName, 0, name, 0, keep);
+                System.arraycopy(buf.array(), start, name, keep, name.length - keep);
+            } else {
+                final int start = buf.position();
+                while (buf.get() != 0) {
+                    // find the terminator
+                }
+                name = new byte[buf.position() - 1 - start];
+                System.arraycopy(buf.array(), start, name, 0, name.length);
+                final int entryLength = buf.position() - entryStart;
+                buf.position(entryStart + (entryLength + 7 & ~7));
+            }
+            previousName = name;
+            if ((flags >> 12 & 3) == 0) {
+                entries.put(new String(name, StandardCharsets.UTF_8), new IndexEntry(toHex(id, 0), mtimeSeconds, size));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Reads an object.
+     *
+     * @param id
+     *            object ID
+     * @param type
+     *            expected type
+     * @return object content
+     * @throws IOException
+     *             I/O error or the object is missing or of the wrong type
+     */
+    private byte[] readObject(final String id,
+        final String type) throws IOException {
+
+        final String[] actualType = new String[1];
+        final byte[] content = readObject(id, actualType);
+        if (!type.equals(actualType[0])) {
+            throw new IOException("object " + id + " is a " + actualType[0] + " not a " + type);
+        }
+        return content;
+    }
+
+    /**
+     * Reads an object.
+     *
+     * @param id
+     *            object ID
+     * @param type
+     *            receives the type of the object
+     * @return object content
+     * @throws IOException
+     *             I/O error or the object is missing
+     */
+    private byte[] readObject(final String id,
+        final String[] type) throws IOException {
+
+        for (final File objects : objectDirs) {
+            final File loose = new File(objects, id.substring(0, 2) + "/" + id.substring(2));
+            if (loose.isFile()) {
+                final byte[] raw;
+                try (final InputStream is = new InflaterInputStream(Files.newInputStream(loose.toPath()))) {
+                    raw = readFully(is);
+                }
+                int nul = 0;
+                while (raw[nul] != 0) {
+                    ++nul;
+                }
+                final String header = new String(raw, 0, nul, StandardCharsets.US_ASCII);
+                type[0] = header.substring(0, header.indexOf(' '));
+                final byte[] content = new byte[raw.length - nul - 1];
+                System.arraycopy(raw, nul + 1, content, 0, content.length);
+                return content;
+            }
+        }
+        final byte[] rawId = fromHex(id);
+        for (final Pack pack : packs()) {
+            final long offset = pack.find(rawId);
+            if (offset >= 0) {
+                try (final RandomAccessFile raf = new RandomAccessFile(pack.packFile, "r")) {
+                    return readPackedObject(raf, offset, type);
+                }
+            }
+        }
+        throw new FileNotFoundException("object " + id + " not found");
+    }
+
+    /**
+     * Reads an object from a pack file resolving any deltas.
+     *
+     * @param raf
+     *            pack file
+     * @param offset
+     *            offset of the object
+     * @param type
+     *            receives the type of the object
+     * @return object content
+     * @throws IOException
+     *             I/O error
+     */
+    private byte[] readPackedObject(final RandomAccessFile raf,
+        final long offset,
+        final String[] type) throws IOException {
+
+        raf.seek(offset);
+        int c = raf.readUnsignedByte();
+        final int packType = c >> 4 & 7;
+        long size = c & 0x0f;
+        int shift = 4;
+        while ((c & 0x80) != 0) {
+            c = raf.readUnsignedByte();
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        }
+
+        if (packType == OBJ_OFS_DELTA) {
+            c = raf.readUnsignedByte();
+            long baseOffset = c & 0x7f;
+            while ((c & 0x80) != 0) {
+                c = raf.readUnsignedByte();
+                baseOffset = (baseOffset + 1 << 7) + (c & 0x7f);
+            }
+            final byte[] delta = inflate(raf, size);
+            return applyDelta(readPackedObject(raf, offset - baseOffset, type), delta);
+        } else if (packType == OBJ_REF_DELTA) {
+            final byte[] baseId = new byte[20];
+            raf.readFully(baseId);
+            final byte[] delta = inflate(raf, size);
+            return applyDelta(readObject(toHex(baseId, 0), type), delta);
+        } else if (packType < TYPE_NAMES.length && TYPE_NAMES[packType] != null) {
+            type[0] = TYPE_NAMES[packType];
+            return inflate(raf, size);
+        } else {
+            throw new IOException("unsupported pack object type " + packType);
+        }
+    }
+
+    /**
+     * Reads the files of a commit or tree recursively.
+     *
+     * @param id
+     *            commit, tag or tree ID
+     * @return blob IDs keyed by path
+     * @throws IOException
+     *             I/O error
+     */
+    public Map<String, String> readTree(final String id) throws IOException {
+
+        final String[] type = new String[1];
+        byte[] content = readObject(id, type);
+        while ("tag".equals(type[0]) || "commit".equals(type[0])) {
+            final String text = new String(content, StandardCharsets.UTF_8);
+            final String target = text.substring(text.indexOf(' ') + 1, text.indexOf('\n'));
+            content = readObject(target, type);
+        }
+        final Map<String, String> files = new HashMap<>();
+        readTree("", content, files);
+        return files;
+    }
+
+    /**
+     * Reads the entries of a tree object recursively.
+     *
+     * @param prefix
+     *            path prefix
+     * @param tree
+     *            tree content
+     * @param files
+     *            receives blob IDs keyed by path
+     * @throws IOException
+     *             I/O error
+     */
+    private void readTree(final String prefix,
+        final byte[] tree,
+        final Map<String, String> files) throws IOException {
+
+        int p = 0;
+        while (p < tree.length) {
+            final int space = indexOf(tree, (byte) ' ', p);
+            final int nul = indexOf(tree, (byte) 0, space);
+            final String mode = new String(tree, p, space - p, StandardCharsets.US_ASCII);
+            final String name = prefix + new String(tree, space + 1, nul - space - 1, StandardCharsets.UTF_8);
+            final String entryId = toHex(tree, nul + 1);
+            p = nul + 21;
+            if ("40000".equals(mode)) {
+                readTree(name + "/", readObject(entryId, "tree"), files);
+            } else if (!"160000".equals(mode)) {
+                files.put(name, entryId);
+            }
+        }
+    }
+
+    /**
+     * Resolves a revision to an object ID. Full object IDs, symbolic refs such
+     * as <code>HEAD</code> and short ref names such as branch and tag names are
+     * supported.
+     *
+     * @param revision
+     *            revision
+     * @return object ID or <code>null</code> if it cannot be resolved.
+     * @throws IOException
+     *             I/O error
+     */
+    public String resolve(final String revision) throws IOException {
+
+        if (isObjectId(revision)) {
+            return revision;
+        }
+        for (final String prefix : REF_PREFIXES) {
+            final String id = resolveRef(prefix + revision, 0);
+            if (id != null) {
+                return id;
+            }
+        }
+        return resolveRef("refs/remotes/" + revision + "/HEAD", 0);
+    }
+
+    /**
+     * Resolves a fully qualified ref name.
+     *
+     * @param ref
+     *            ref name
+     * @param depth
+     *            symbolic ref depth to prevent loops
+     * @return object ID or <code>null</code> if it is not found.
+     * @throws IOException
+     *             I/O error
+     */
+    private String resolveRef(final String ref,
+        final int depth) throws IOException {
+
+        if (depth > 5) {
+            throw new IOException("too many levels of symbolic refs at " + ref);
+        }
+        final File looseRef = new File(ref.startsWith("refs/") ? commonDir : gitDir, ref);
+        if (looseRef.isFile()) {
+            final String content = new String(Files.readAllBytes(looseRef.toPath()), StandardCharsets.UTF_8).trim();
+            if (content.startsWith("ref:")) {
+                return resolveRef(content.substring("ref:".length()).trim(), depth + 1);
+            }
+            return isObjectId(content) ? content : null;
+        }
+        final File packedRefs = new File(commonDir, "packed-refs");
+        if (packedRefs.isFile()) {
+            for (final String line : Files.readAllLines(packedRefs.toPath(), StandardCharsets.UTF_8)) {
+                if (line.length() > 41 && line.charAt(40) == ' ' && line.substring(41).equals(ref)) {
+                    return line.substring(0, 40);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,805 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.EnumConstantDeclaration;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionMethodReference;
+import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.MarkerAnnotation;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.Modifier.ModifierKeyword;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.NormalAnnotation;
+import org.eclipse.jdt.core.dom.PackageDeclaration;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.QualifiedType;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SimpleType;
+import org.eclipse.jdt.core.dom.SingleMemberAnnotation;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.TypeParameter;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
+import org.eclipse.jdt.core.dom.rewrite.ListRewrite;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * <p>
+ * Applies the clean up actions of an Eclipse clean up profile that can be done
+ * without resolving bindings. The compilation unit is parsed once and all the
+ * enabled actions are recorded on a single {@link ASTRewrite} so the cost of
+ * parsing is not paid per action.
+ * </p>
+ * <p>
+ * As there are no bindings, names are matched by identifier. This is
+ * conservative: an import is kept if its simple name appears anywhere in the
+ * unit and a variable is not made final if a variable with the same name is
+ * assigned anywhere in the enclosing body declaration. Missing imports are
+ * resolved against a {@link SymbolIndex} of the types that can be imported.
+ * </p>
+ * <p>
+ * Units with syntax errors are left as is. This class is thread-safe.
+ * </p>
+ */
+public final class JavaCleanUp {
+
+    /**
+     * Makes local variables that are initialized and never assigned final.
+     * Requires {@link #MAKE_VARIABLE_DECLARATIONS_FINAL}.
+     */
+    public static final String MAKE_LOCAL_VARIABLE_FINAL = "cleanup.make_local_variable_final";
+
+    /**
+     * Makes method parameters that are never assigned final. Requires
+     * {@link #MAKE_VARIABLE_DECLARATIONS_FINAL}.
+     */
+    public static final String MAKE_PARAMETERS_FINAL = "cleanup.make_parameters_final";
+
+    /**
+     * Enables the actions that add the final modifier.
+     */
+    public static final String MAKE_VARIABLE_DECLARATIONS_FINAL = "cleanup.make_variable_declarations_final";
+
+    /**
+     * Adds the imports of the types that are referenced by their simple name
+     * and not imported, then removes the unused imports. Requires a
+     * {@link SymbolIndex}.
+     */
+    public static final String ORGANIZE_IMPORTS = "cleanup.organize_imports";
+
+    /**
+     * Removes single type and static imports whose simple name is not used as
+     * well as duplicate imports.
+     */
+    public static final String REMOVE_UNUSED_IMPORTS = "cleanup.remove_unused_imports";
+
+    /**
+     * Gets the package part of a fully qualified name.
+     *
+     * @param qualifiedName
+     *            fully qualified name
+     * @return package name
+     */
+    private static String packageName(final String qualifiedName) {
+
+        final int dot = qualifiedName.lastIndexOf('.');
+        return dot < 0 ? "" : qualifiedName.substring(0, dot);
+    }
+
+    /**
+     * Collects the identifiers of the variables that are assigned in the node.
+     *
+     * @param node
+     *            node
+     * @return identifiers
+     */
+    private static Set<String> assignedNames(final ASTNode node) {
+
+        final Set<String> names = new HashSet<>();
+        node.accept(new ASTVisitor() {
+
+            private void add(final Expression expression) {
+
+                Expression e = expression;
+                while (e instanceof ParenthesizedExpression) {
+                    e = ((ParenthesizedExpression) e).getExpression();
+                }
+                if (e instanceof SimpleName) {
+                    names.add(((SimpleName) e).getIdentifier());
+                }
+            }
+
+            @Override
+            public boolean visit(final Assignment assignment) {
+
+                add(assignment.getLeftHandSide());
+                return true;
+            }
+
+            @Override
+            public boolean visit(final PostfixExpression expression) {
+
+                add(expression.getOperand());
+                return true;
+            }
+
+            @Override
+            public boolean visit(final PrefixExpression expression) {
+
+                if (expression.getOperator() == PrefixExpression.Operator.INCREMENT || expression.getOperator() == PrefixExpression.Operator.DECREMENT) {
+                    add(expression.getOperand());
+                }
+                return true;
+            }
+        });
+        return names;
+    }
+
+    /**
+     * Checks if the identifier follows the naming convention of constants, i.e.
+     * it has no lower case letter.
+     *
+     * @param identifier
+     *            identifier
+     * @return <code>true</code> if the identifier may be a constant
+     */
+    private static boolean isConstantName(final String identifier) {
+
+        for (int i = 0; i < identifier.length(); ++i) {
+            if (Character.isLowerCase(identifier.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the modifiers contain <code>final</code>.
+     *
+     * @param modifiers
+     *            modifiers and annotations
+     * @return <code>true</code> if the declaration is already final
+     */
+    private static boolean isFinal(final List<?> modifiers) {
+
+        for (final Object modifier : modifiers) {
+            if (modifier instanceof Modifier && ((Modifier) modifier).isFinal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the identifier an import makes available.
+     *
+     * @param name
+     *            imported name
+     * @return last segment of the name
+     */
+    private static String simpleName(final Name name) {
+
+        return name instanceof QualifiedName ? ((QualifiedName) name).getName().getIdentifier() : ((SimpleName) name).getIdentifier();
+    }
+
+    /**
+     * Compiler options used to parse the units.
+     */
+    private final Map<String, String> compilerOptions = new HashMap<>();
+
+    /**
+     * Index used to organize the imports, <code>null</code> if they are not
+     * organized.
+     */
+    private final SymbolIndex index;
+
+    /**
+     * Make local variables final.
+     */
+    private final boolean localVariablesFinal;
+
+    /**
+     * Make parameters final.
+     */
+    private final boolean parametersFinal;
+
+    /**
+     * Remove unused and duplicate imports.
+     */
+    private final boolean removeUnusedImports;
+
+    /**
+     * Creates the clean up.
+     *
+     * @param settings
+     *            clean up profile settings
+     * @param options
+     *            compiler options, the source level defaults to 1.8 if it is
+     *            not set.
+     * @param symbolIndex
+     *            index used to organize the imports, may be <code>null</code>
+     *            in which case they are not organized.
+     */
+    public JavaCleanUp(final Map<?, ?> settings,
+        final Map<?, ?> options,
+        final SymbolIndex symbolIndex) {
+
+        JavaCore.setComplianceOptions(JavaCore.VERSION_1_8, compilerOptions);
+        for (final Map.Entry<?, ?> entry : options.entrySet()) {
+            if (entry.getValue() != null) {
+                compilerOptions.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+            }
+        }
+        // Javadoc references are needed to tell whether an import is used
+        compilerOptions.put(JavaCore.COMPILER_DOC_COMMENT_SUPPORT, JavaCore.ENABLED);
+        final boolean variablesFinal = isEnabled(settings, MAKE_VARIABLE_DECLARATIONS_FINAL);
+        localVariablesFinal = variablesFinal && isEnabled(settings, MAKE_LOCAL_VARIABLE_FINAL);
+        parametersFinal = variablesFinal && isEnabled(settings, MAKE_PARAMETERS_FINAL);
+        index = isEnabled(settings, ORGANIZE_IMPORTS) ? symbolIndex : null;
+        removeUnusedImports = index != null || isEnabled(settings, REMOVE_UNUSED_IMPORTS);
+    }
+
+    /**
+     * <p>
+     * Records the addition of the imports of the types that are referenced by
+     * their simple name but not declared in the unit, imported or in
+     * <code>java.lang</code>. A name is only imported if the index has a single
+     * type for it, or a single one in a package that is already imported;
+     * otherwise it is left for the developer to resolve.
+     * </p>
+     * <p>
+     * Names that qualify an expression, e.g. <code>LOG</code> in
+     * <code>LOG.debug()</code>, may be fields rather than types. They are
+     * skipped if they are declared in the unit or statically imported. Names in
+     * the constant naming convention are also skipped if the unit may inherit
+     * fields from a type outside of it or has a static import on demand.
+     * </p>
+     *
+     * @param unit
+     *            compilation unit
+     * @param rewrite
+     *            receives the changes
+     * @throws IOException
+     *             I/O error reading the index
+     */
+    private void addMissingImports(final CompilationUnit unit,
+        final ASTRewrite rewrite) throws IOException {
+
+        final Set<String> referenced = new TreeSet<>();
+        final Set<String> qualifiers = new TreeSet<>();
+        final Set<String> declared = new HashSet<>();
+        final Set<String> declaredTypes = new HashSet<>();
+        final Set<String> supertypes = new HashSet<>();
+        unit.accept(new ASTVisitor() {
+
+            private void add(final Set<String> names,
+                final Name name) {
+
+                Name first = name;
+                while (first instanceof QualifiedName) {
+                    first = ((QualifiedName) first).getQualifier();
+                }
+                final String identifier = ((SimpleName) first).getIdentifier();
+                if (Character.isUpperCase(identifier.charAt(0))) {
+                    names.add(identifier);
+                }
+            }
+
+            private void addQualifier(final Name name) {
+
+                add(qualifiers, name);
+            }
+
+            private void addSupertype(final Type type) {
+
+                Type rawType = type;
+                if (rawType instanceof ParameterizedType) {
+                    rawType = ((ParameterizedType) rawType).getType();
+                }
+                if (rawType instanceof SimpleType) {
+                    supertypes.add(simpleName(((SimpleType) rawType).getName()));
+                } else if (rawType instanceof QualifiedType) {
+                    supertypes.add(((QualifiedType) rawType).getName().getIdentifier());
+                }
+            }
+
+            private void addType(final Name name) {
+
+                add(referenced, name);
+            }
+
+            @Override
+            public boolean visit(final AnonymousClassDeclaration node) {
+
+                if (node.getParent() instanceof ClassInstanceCreation) {
+                    addSupertype(((ClassInstanceCreation) node.getParent()).getType());
+                }
+                return true;
+            }
+
+            @Override
+            public boolean visit(final AnnotationTypeDeclaration node) {
+
+                declared.add(node.getName().getIdentifier());
+                declaredTypes.add(node.getName().getIdentifier());
+                return true;
+            }
+
+            @Override
+            public boolean visit(final EnumConstantDeclaration node) {
+
+                declared.add(node.getName().getIdentifier());
+                return true;
+            }
+
+            @Override
+            public boolean visit(final EnumDeclaration node) {
+
+                declared.add(node.getName().getIdentifier());
+                declaredTypes.add(node.getName().getIdentifier());
+                for (final Object superInterface : node.superInterfaceTypes()) {
+                    addSupertype((Type) superInterface);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean visit(final ExpressionMethodReference node) {
+
+                if (node.getExpression() instanceof Name) {
+                    addQualifier((Name) node.getExpression());
+                }
+                return true;
+            }
+
+            @Override
+            public boolean visit(final ImportDeclaration node) {
+
+                return false;
+            }
+
+            @Override
+            public boolean visit(final MarkerAnnotation node) {
+
+                addType(node.getTypeName());
+                return true;
+            }
+
+            @Override
+            public boolean visit(final MethodInvocation node) {
+
+                if (node.getExpression() instanceof Name) {
+                    addQualifier((Name) node.getExpression());
+                }
+                return true;
+            }
+
+            @Override
+            public boolean visit(final NormalAnnotation node) {
+
+                addType(node.getTypeName());
+                return true;
+            }
+
+            @Override
+            public boolean visit(final PackageDeclaration node) {
+
+                return false;
+            }
+
+            @Override
+            public boolean visit(final QualifiedName node) {
+
+                addQualifier(node);
+                return false;
+            }
+
+            @Override
+            public boolean visit(final SimpleType node) {
+
+                addType(node.getName());
+                return false;
+            }
+
+            @Override
+            public boolean visit(final SingleMemberAnnotation node) {
+
+                addType(node.getTypeName());
+                return true;
+            }
+
+            @Override
+            public boolean visit(final SingleVariableDeclaration node) {
+
+                declared.add(node.getName().getIdentifier());
+                return true;
+            }
+
+            @Override
+            public boolean visit(final TypeDeclaration node) {
+
+                declared.add(node.getName().getIdentifier());
+                declaredTypes.add(node.getName().getIdentifier());
+                if (node.getSuperclassType() != null) {
+                    addSupertype(node.getSuperclassType());
+                }
+                for (final Object superInterface : node.superInterfaceTypes()) {
+                    addSupertype((Type) superInterface);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean visit(final TypeParameter node) {
+
+                declared.add(node.getName().getIdentifier());
+                return true;
+            }
+
+            @Override
+            public boolean visit(final VariableDeclarationFragment node) {
+
+                declared.add(node.getName().getIdentifier());
+                return true;
+            }
+        });
+
+        final Set<String> importedPackages = new HashSet<>();
+        final Set<String> onDemandPackages = new HashSet<>();
+        ImportDeclaration firstStatic = null;
+        ImportDeclaration lastType = null;
+        boolean mayInheritFields = false;
+        for (final Object o : unit.imports()) {
+            final ImportDeclaration importDeclaration = (ImportDeclaration) o;
+            final String name = importDeclaration.getName().getFullyQualifiedName();
+            if (importDeclaration.isStatic()) {
+                if (firstStatic == null) {
+                    firstStatic = importDeclaration;
+                }
+                if (importDeclaration.isOnDemand()) {
+                    mayInheritFields = true;
+                } else {
+                    declared.add(simpleName(importDeclaration.getName()));
+                }
+                continue;
+            }
+            lastType = importDeclaration;
+            if (importDeclaration.isOnDemand()) {
+                onDemandPackages.add(name);
+            } else {
+                declared.add(simpleName(importDeclaration.getName()));
+                importedPackages.add(packageName(name));
+            }
+        }
+        final String unitPackage = unit.getPackage() == null ? "" : unit.getPackage().getName().getFullyQualifiedName();
+        onDemandPackages.add(unitPackage);
+        onDemandPackages.add("java.lang");
+
+        for (final String supertype : supertypes) {
+            if (!declaredTypes.contains(supertype)) {
+                mayInheritFields = true;
+            }
+        }
+        for (final String qualifier : qualifiers) {
+            if (!mayInheritFields || !isConstantName(qualifier)) {
+                referenced.add(qualifier);
+            }
+        }
+
+        final Set<String> missing = new TreeSet<>();
+        for (final String simpleName : referenced) {
+            if (declared.contains(simpleName)) {
+                continue;
+            }
+            final Set<String> candidates = index.lookup(simpleName);
+            final List<String> choices = new ArrayList<>();
+            final List<String> preferred = new ArrayList<>();
+            for (final String candidate : candidates) {
+                if (onDemandPackages.contains(packageName(candidate))) {
+                    choices.clear();
+                    preferred.clear();
+                    break;
+                }
+                choices.add(candidate);
+                if (importedPackages.contains(packageName(candidate))) {
+                    preferred.add(candidate);
+                }
+            }
+            if (choices.size() == 1) {
+                missing.add(choices.get(0));
+            } else if (preferred.size() == 1) {
+                missing.add(preferred.get(0));
+            }
+        }
+
+        final ListRewrite imports = rewrite.getListRewrite(unit, CompilationUnit.IMPORTS_PROPERTY);
+        ASTNode previous = lastType;
+        for (final String name : missing) {
+            final ImportDeclaration importDeclaration = unit.getAST().newImportDeclaration();
+            importDeclaration.setName(unit.getAST().newName(name));
+            ImportDeclaration next = null;
+            for (final Object o : unit.imports()) {
+                final ImportDeclaration existing = (ImportDeclaration) o;
+                if (!existing.isStatic() && existing.getName().getFullyQualifiedName().compareTo(name) > 0) {
+                    next = existing;
+                    break;
+                }
+            }
+            if (next != null) {
+                imports.insertBefore(importDeclaration, next, null);
+            } else if (previous != null) {
+                imports.insertAfter(importDeclaration, previous, null);
+                previous = importDeclaration;
+            } else if (firstStatic != null) {
+                imports.insertBefore(importDeclaration, firstStatic, null);
+            } else {
+                imports.insertLast(importDeclaration, null);
+            }
+        }
+    }
+
+    /**
+     * Applies the enabled actions to the source.
+     *
+     * @param source
+     *            Java source
+     * @return cleaned up source, the same instance if nothing changed.
+     * @throws BadLocationException
+     *             the edits do not apply to the source
+     * @throws IOException
+     *             I/O error reading the symbol index
+     */
+    public String cleanUp(final String source) throws BadLocationException,
+        IOException {
+
+        if (!isEnabled()) {
+            return source;
+        }
+        final ASTParser parser = ASTParser.newParser(AST.JLS8);
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setCompilerOptions(compilerOptions);
+        parser.setSource(source.toCharArray());
+        final CompilationUnit unit = (CompilationUnit) parser.createAST(null);
+        for (final IProblem problem : unit.getProblems()) {
+            if (problem.isError()) {
+                return source;
+            }
+        }
+
+        final ASTRewrite rewrite = ASTRewrite.create(unit.getAST());
+        if (index != null) {
+            addMissingImports(unit, rewrite);
+        }
+        if (removeUnusedImports) {
+            removeUnusedImports(unit, rewrite);
+        }
+        if (localVariablesFinal || parametersFinal) {
+            makeFinal(unit, rewrite);
+        }
+
+        final IDocument document = new Document(source);
+        final TextEdit edit = rewrite.rewriteAST(document, compilerOptions);
+        if (!edit.hasChildren()) {
+            return source;
+        }
+        edit.apply(document);
+        return document.get();
+    }
+
+    /**
+     * Gets the actions that are enabled, used to tell whether the output of the
+     * clean up may have changed.
+     *
+     * @return keys of the enabled settings, sorted
+     */
+    public Set<String> getActions() {
+
+        final Set<String> actions = new TreeSet<>();
+        if (localVariablesFinal) {
+            actions.add(MAKE_LOCAL_VARIABLE_FINAL);
+        }
+        if (index != null) {
+            actions.add(ORGANIZE_IMPORTS);
+        }
+        if (parametersFinal) {
+            actions.add(MAKE_PARAMETERS_FINAL);
+        }
+        if (removeUnusedImports) {
+            actions.add(REMOVE_UNUSED_IMPORTS);
+        }
+        return actions;
+    }
+
+    /**
+     * Checks if any action is enabled.
+     *
+     * @return <code>true</code> if {@link #cleanUp(String)} may change the
+     *         source
+     */
+    public boolean isEnabled() {
+
+        return localVariablesFinal || parametersFinal || removeUnusedImports || index != null;
+    }
+
+    /**
+     * Checks if a setting is <code>true</code>.
+     *
+     * @param settings
+     *            clean up profile settings
+     * @param key
+     *            setting key
+     * @return <code>true</code> if the setting is enabled
+     */
+    private static boolean isEnabled(final Map<?, ?> settings,
+        final String key) {
+
+        return "true".equals(settings.get(key));
+    }
+
+    /**
+     * Records the addition of the final modifier to the parameters and local
+     * variables that are not assigned.
+     *
+     * @param unit
+     *            compilation unit
+     * @param rewrite
+     *            receives the changes
+     */
+    private void makeFinal(final CompilationUnit unit,
+        final ASTRewrite rewrite) {
+
+        final Map<BodyDeclaration, Set<String>> assigned = new IdentityHashMap<>();
+        unit.accept(new ASTVisitor() {
+
+            private void addFinal(final ASTNode declaration) {
+
+                final Modifier modifier = unit.getAST().newModifier(ModifierKeyword.FINAL_KEYWORD);
+                if (declaration instanceof SingleVariableDeclaration) {
+                    rewrite.getListRewrite(declaration, SingleVariableDeclaration.MODIFIERS2_PROPERTY).insertLast(modifier, null);
+                } else {
+                    rewrite.getListRewrite(declaration, VariableDeclarationStatement.MODIFIERS2_PROPERTY).insertLast(modifier, null);
+                }
+            }
+
+            private Set<String> assignedIn(final ASTNode node) {
+
+                ASTNode parent = node.getParent();
+                while (!(parent instanceof BodyDeclaration)) {
+                    parent = parent.getParent();
+                }
+                final BodyDeclaration body = (BodyDeclaration) parent;
+                Set<String> names = assigned.get(body);
+                if (names == null) {
+                    names = assignedNames(body);
+                    assigned.put(body, names);
+                }
+                return names;
+            }
+
+            @Override
+            public boolean visit(final EnhancedForStatement statement) {
+
+                final SingleVariableDeclaration parameter = statement.getParameter();
+                if (localVariablesFinal && !isFinal(parameter.modifiers()) && !assignedIn(statement).contains(parameter.getName().getIdentifier())) {
+                    addFinal(parameter);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean visit(final MethodDeclaration method) {
+
+                if (!parametersFinal || method.getBody() == null) {
+                    return true;
+                }
+                final Set<String> names = assignedIn(method.getBody());
+                for (final Object parameter : method.parameters()) {
+                    final SingleVariableDeclaration declaration = (SingleVariableDeclaration) parameter;
+                    if (!isFinal(declaration.modifiers()) && !names.contains(declaration.getName().getIdentifier())) {
+                        addFinal(declaration);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public boolean visit(final VariableDeclarationStatement statement) {
+
+                if (!localVariablesFinal || isFinal(statement.modifiers())) {
+                    return true;
+                }
+                final Set<String> names = assignedIn(statement);
+                for (final Object fragment : statement.fragments()) {
+                    final VariableDeclarationFragment declaration = (VariableDeclarationFragment) fragment;
+                    if (declaration.getInitializer() == null || names.contains(declaration.getName().getIdentifier())) {
+                        return true;
+                    }
+                }
+                addFinal(statement);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Records the removal of the single type and static imports whose simple
+     * name does not appear in the unit, including in Javadoc references, and of
+     * duplicate imports. On demand imports are kept.
+     *
+     * @param unit
+     *            compilation unit
+     * @param rewrite
+     *            receives the changes
+     */
+    private static void removeUnusedImports(final CompilationUnit unit,
+        final ASTRewrite rewrite) {
+
+        final Set<String> used = new HashSet<>();
+        unit.accept(new ASTVisitor(true) {
+
+            @Override
+            public boolean visit(final ImportDeclaration node) {
+
+                return false;
+            }
+
+            @Override
+            public boolean visit(final PackageDeclaration node) {
+
+                return false;
+            }
+
+            @Override
+            public boolean visit(final SimpleName node) {
+
+                used.add(node.getIdentifier());
+                return false;
+            }
+        });
+
+        final Set<String> seen = new HashSet<>();
+        for (final Object o : unit.imports()) {
+            final ImportDeclaration importDeclaration = (ImportDeclaration) o;
+            if (!seen.add(importDeclaration.isStatic() + importDeclaration.getName().getFullyQualifiedName() + importDeclaration.isOnDemand())) {
+                rewrite.remove(importDeclaration, null);
+            } else if (!importDeclaration.isOnDemand() && !used.contains(simpleName(importDeclaration.getName()))) {
+                rewrite.remove(importDeclaration, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import org.eclipse.jdt.core.formatter.CodeFormatter;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * <p>
+ * Adapts the Eclipse JSDT code formatter to the JDT {@link CodeFormatter} API
+ * so JavaScript files go through the same pipeline as Java files. JSDT is not a
+ * dependency of the plugin, it is loaded by reflection if it has been added to
+ * the plugin dependencies.
+ * </p>
+ * <p>
+ * The options are the ones stored in
+ * {@value net.trajano.mojo.m2ecodestyle.internal.PreferenceFileName#JSDT_CORE}.
+ * </p>
+ */
+public final class JavaScriptFormatter extends CodeFormatter {
+
+    /**
+     * Creates the JavaScript code formatter.
+     */
+    public static final CodeFormatterCache.Factory FACTORY = new CodeFormatterCache.Factory() {
+
+        @Override
+        public CodeFormatter create(final Map<?, ?> options) {
+
+            return new JavaScriptFormatter(options);
+        }
+    };
+
+    /**
+     * JSDT kind for a JavaScript compilation unit.
+     */
+    private static final int K_JAVASCRIPT_UNIT = 0x08;
+
+    /**
+     * JSDT tool factory class.
+     */
+    private static final String TOOL_FACTORY = "org.eclipse.wst.jsdt.core.ToolFactory";
+
+    /**
+     * Name of the class whose static <code>createCodeFormatter(Map)</code>
+     * method creates the JSDT code formatter. It is only changed by the tests
+     * to stand in a fake for JSDT.
+     */
+    private static volatile String toolFactory = TOOL_FACTORY;
+
+    /**
+     * Checks if JSDT is on the class path.
+     *
+     * @return <code>true</code> if JavaScript files can be formatted
+     */
+    public static boolean isAvailable() {
+
+        try {
+            Class.forName(toolFactory, false, JavaScriptFormatter.class.getClassLoader());
+            return true;
+        } catch (final ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * JSDT code formatter.
+     */
+    private final Object delegate;
+
+    /**
+     * JSDT <code>format(int, String, int, int, int, String)</code> method.
+     */
+    private final Method formatMethod;
+
+    /**
+     * Creates the JSDT code formatter.
+     *
+     * @param options
+     *            formatter options
+     */
+    private JavaScriptFormatter(final Map<?, ?> options) {
+
+        try {
+            final Class<?> factoryClass = Class.forName(toolFactory, true, JavaScriptFormatter.class.getClassLoader());
+            delegate = factoryClass.getMethod("createCodeFormatter", Map.class).invoke(null, options);
+            formatMethod = delegate.getClass().getMethod("format", int.class, String.class, int.class, int.class, int.class, String.class);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException("unable to create the JSDT code formatter", e);
+        }
+    }
+
+    /**
+     * Formats the source using JSDT. The kind is replaced with the JSDT kind
+     * for a JavaScript compilation unit, only {@link #F_INCLUDE_COMMENTS} is
+     * kept.
+     *
+     * @param kind
+     *            kind of code snippet
+     * @param source
+     *            source to format
+     * @param offset
+     *            offset of the range to format
+     * @param length
+     *            length of the range to format
+     * @param indentationLevel
+     *            initial indentation level
+     * @param lineSeparator
+     *            line separator, <code>null</code> to use the default
+     * @return edits or <code>null</code> if the source could not be formatted
+     */
+    @Override
+    public TextEdit format(final int kind,
+        final String source,
+        final int offset,
+        final int length,
+        final int indentationLevel,
+        final String lineSeparator) {
+
+        try {
+            return (TextEdit) formatMethod.invoke(delegate, K_JAVASCRIPT_UNIT | kind & F_INCLUDE_COMMENTS, source, offset, length, indentationLevel, lineSeparator);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (final InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Formats the range from the start of the first region to the end of the
+     * last one as JSDT can only format a single range.
+     *
+     * @param kind
+     *            kind of code snippet
+     * @param source
+     *            source to format
+     * @param regions
+     *            regions to format, sorted and not overlapping
+     * @param indentationLevel
+     *            initial indentation level
+     * @param lineSeparator
+     *            line separator, <code>null</code> to use the default
+     * @return edits or <code>null</code> if the source could not be formatted
+     */
+    @Override
+    public TextEdit format(final int kind,
+        final String source,
+        final IRegion[] regions,
+        final int indentationLevel,
+        final String lineSeparator) {
+
+        if (regions.length == 0) {
+            return null;
+        }
+        final IRegion last = regions[regions.length - 1];
+        final int offset = regions[0].getOffset();
+        return format(kind, source, offset, last.getOffset() + last.getLength() - offset, indentationLevel, lineSeparator);
+    }
+}
@@ -0,0 +1,227 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+
+/**
+ * <p>
+ * Computes the regions of a text that changed from a base version. The lines
+ * common to the start and end of both versions are skipped and the Myers
+ * difference algorithm is run on the rest. Lines are compared without their
+ * line terminators so a change of line endings alone is not a change.
+ * </p>
+ * <p>
+ * A line is changed if it is not in the base. Where lines were only removed,
+ * the line that follows the removal, or the last line, is treated as changed so
+ * the code around it gets formatted.
+ * </p>
+ */
+public final class LineDiff {
+
+    /**
+     * Maximum number of differing lines the Myers algorithm looks for. When
+     * there are more, everything between the common start and end is treated as
+     * changed as the files are too different for region formatting to be of any
+     * use.
+     */
+    private static final int MAX_EDITS = 1000;
+
+    /**
+     * Computes the changed regions.
+     *
+     * @param base
+     *            base text
+     * @param current
+     *            current text
+     * @return regions of <code>current</code> that changed, sorted and not
+     *         overlapping. Each region covers whole lines without the final
+     *         line terminator. The array is empty if there are no changes.
+     */
+    public static IRegion[] changedRegions(final String base,
+        final String current) {
+
+        final List<String> a = lines(base, null);
+        final List<Integer> offsets = new ArrayList<>();
+        final List<String> b = lines(current, offsets);
+        final int n = a.size();
+        final int m = b.size();
+
+        int prefix = 0;
+        while (prefix < n && prefix < m && a.get(prefix).equals(b.get(prefix))) {
+            ++prefix;
+        }
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < m - prefix && a.get(n - 1 - suffix).equals(b.get(m - 1 - suffix))) {
+            ++suffix;
+        }
+
+        final boolean[] changed = new boolean[m + 1];
+        markChanges(a.subList(prefix, n - suffix), b.subList(prefix, m - suffix), changed, prefix);
+        if (changed[m] && m > 0) {
+            // lines removed at the end, the last line is marked instead
+            changed[m - 1] = true;
+        }
+
+        final List<IRegion> regions = new ArrayList<>();
+        for (int i = 0; i < m; ++i) {
+            if (!changed[i]) {
+                continue;
+            }
+            final int start = i;
+            while (i + 1 < m && changed[i + 1]) {
+                ++i;
+            }
+            final int startOffset = offsets.get(start);
+            regions.add(new Region(startOffset, lineEnd(current, offsets.get(i)) - startOffset));
+        }
+        return regions.toArray(new IRegion[regions.size()]);
+    }
+
+    /**
+     * Gets the offset of the end of the line without its terminator.
+     *
+     * @param text
+     *            text
+     * @param lineStart
+     *            offset of the start of the line
+     * @return offset of the end of the line
+     */
+    private static int lineEnd(final String text,
+        final int lineStart) {
+
+        int end = text.indexOf('\n', lineStart);
+        if (end < 0) {
+            end = text.length();
+        }
+        if (end > lineStart && text.charAt(end - 1) == '\r') {
+            --end;
+        }
+        return end;
+    }
+
+    /**
+     * Splits the text into lines without their terminators.
+     *
+     * @param text
+     *            text
+     * @param offsets
+     *            receives the offset of the start of each line, may be
+     *            <code>null</code>.
+     * @return lines
+     */
+    private static List<String> lines(final String text,
+        final List<Integer> offsets) {
+
+        final List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            if (offsets != null) {
+                offsets.add(start);
+            }
+            final int end = lineEnd(text, start);
+            lines.add(text.substring(start, end));
+            final int next = text.indexOf('\n', start);
+            start = next < 0 ? text.length() : next + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * Marks the lines of <code>b</code> that are not in <code>a</code> using
+     * the Myers algorithm. Where lines of <code>a</code> are removed, the line
+     * of <code>b</code> that follows is marked.
+     *
+     * @param a
+     *            base lines
+     * @param b
+     *            current lines
+     * @param changed
+     *            receives the changed lines, has one more entry than the
+     *            current text has lines.
+     * @param offset
+     *            index of the first line of <code>b</code> in the current text
+     */
+    private static void markChanges(final List<String> a,
+        final List<String> b,
+        final boolean[] changed,
+        final int offset) {
+
+        final int n = a.size();
+        final int m = b.size();
+        if (n == 0 && m == 0) {
+            return;
+        }
+        final int max = Math.min(n + m, MAX_EDITS);
+        final int[] v = new int[2 * max + 2];
+        final List<int[]> trace = new ArrayList<>();
+        int d = 0;
+        boolean found = false;
+        for (; d <= max && !found; ++d) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || k != d && v[max + k - 1] < v[max + k + 1]) {
+                    x = v[max + k + 1];
+                } else {
+                    x = v[max + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a.get(x).equals(b.get(y))) {
+                    ++x;
+                    ++y;
+                }
+                v[max + k] = x;
+                if (x >= n && y >= m) {
+                    found = true;
+                    break;
+                }
+            }
+            final int[] snapshot = new int[2 * d + 1];
+            System.arraycopy(v, max - d, snapshot, 0, snapshot.length);
+            trace.add(snapshot);
+        }
+        if (!found) {
+            for (int i = 0; i <= m; ++i) {
+                changed[offset + i] = true;
+            }
+            return;
+        }
+
+        int x = n;
+        int y = m;
+        for (d = trace.size() - 1; d > 0; --d) {
+            final int[] previous = trace.get(d - 1);
+            final int k = x - y;
+            final int previousK;
+            if (k == -d || k != d && previous[k - 1 + d - 1] < previous[k + 1 + d - 1]) {
+                previousK = k + 1;
+            } else {
+                previousK = k - 1;
+            }
+            final int previousX = previous[previousK + d - 1];
+            final int previousY = previousX - previousK;
+            while (x > previousX && y > previousY) {
+                --x;
+                --y;
+            }
+            if (previousK == k + 1) {
+                // insertion of b[previousY]
+                changed[offset + previousY] = true;
+            } else {
+                // removal of a[previousX], the next line of b is marked
+                changed[offset + y] = true;
+            }
+            x = previousX;
+            y = previousY;
+        }
+    }
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private LineDiff() {
+
+    }
+}
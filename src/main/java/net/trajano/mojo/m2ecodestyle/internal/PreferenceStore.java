@@ -0,0 +1,138 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+/**
+ * <p>
+ * In-memory model of the <em>prefs</em> files in a settings directory. Each
+ * file is loaded the first time it is requested and all the merges are applied
+ * to the loaded copy. {@link #flush(BuildContext)} then writes each file at
+ * most once using {@link PreferencesWriter} and skips the ones whose
+ * preferences did not change.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+public final class PreferenceStore {
+
+    /**
+     * Creates a copy of the properties.
+     *
+     * @param props
+     *            properties to copy
+     * @return copy
+     */
+    private static Properties copy(final Properties props) {
+
+        final Properties copy = new Properties();
+        copy.putAll(props);
+        return copy;
+    }
+
+    /**
+     * Settings directory.
+     */
+    private final File directory;
+
+    /**
+     * Preferences as they were loaded from disk, keyed by prefs file name. The
+     * value is <code>null</code> if the file did not exist.
+     */
+    private final Map<String, Properties> original = new LinkedHashMap<>();
+
+    /**
+     * Preferences being modified, keyed by prefs file name.
+     */
+    private final Map<String, Properties> preferences = new LinkedHashMap<>();
+
+    /**
+     * Constructs the store.
+     *
+     * @param directory
+     *            settings directory
+     */
+    public PreferenceStore(final File directory) {
+
+        this.directory = directory;
+    }
+
+    /**
+     * Writes the prefs files whose preferences have changed since they were
+     * loaded.
+     *
+     * @param buildContext
+     *            build context used to write the files
+     * @return names of the prefs files that were written
+     * @throws IOException
+     *             I/O error
+     */
+    public List<String> flush(final BuildContext buildContext) throws IOException {
+
+        final List<String> written = new ArrayList<>();
+        for (final Map.Entry<String, Properties> entry : preferences.entrySet()) {
+            final String prefsFile = entry.getKey();
+            final Properties loaded = original.get(prefsFile);
+            if (loaded == null ? entry.getValue().isEmpty() : entry.getValue().equals(loaded)) {
+                continue;
+            }
+            AtomicFileWriter.write(new File(directory, prefsFile), PreferencesWriter.format(entry.getValue()), buildContext);
+            original.put(prefsFile, copy(entry.getValue()));
+            written.add(prefsFile);
+        }
+        return written;
+    }
+
+    /**
+     * Gets the names of the prefs files that have been requested.
+     *
+     * @return prefs file names
+     */
+    public Set<String> getPrefsFiles() {
+
+        return Collections.unmodifiableSet(preferences.keySet());
+    }
+
+    /**
+     * Gets the preferences of the prefs file, loading them from disk the first
+     * time. Changes made to the returned object are written by
+     * {@link #flush(BuildContext)}.
+     *
+     * @param prefsFile
+     *            prefs file name
+     * @return modifiable preferences
+     * @throws IOException
+     *             I/O error
+     */
+    public Properties get(final String prefsFile) throws IOException {
+
+        Properties props = preferences.get(prefsFile);
+        if (props != null) {
+            return props;
+        }
+        props = new Properties();
+        final File file = new File(directory, prefsFile);
+        if (file.exists()) {
+            try (final InputStream is = Files.newInputStream(file.toPath())) {
+                props.load(is);
+            }
+            original.put(prefsFile, copy(props));
+        } else {
+            original.put(prefsFile, null);
+        }
+        preferences.put(prefsFile, props);
+        return props;
+    }
+}
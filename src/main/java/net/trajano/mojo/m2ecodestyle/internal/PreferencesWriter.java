@@ -0,0 +1,114 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * Writes <em>prefs</em> files in a form that only depends on their content.
+ * Unlike {@link Properties#store(java.io.OutputStream, String)} the keys are
+ * sorted, no timestamp is written and lines always end with <code>\n</code>, so
+ * writing the same preferences twice gives the same bytes.
+ * </p>
+ * <p>
+ * The escaping is the same as {@link Properties} so the output can be read back
+ * with {@link Properties#load(java.io.InputStream)}.
+ * </p>
+ */
+public final class PreferencesWriter {
+
+    /**
+     * Comment written at the top of the prefs files.
+     */
+    private static final String COMMENT = "#Generated by m2e codestyle maven plugin\n";
+
+    /**
+     * Hex digits.
+     */
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Appends the escaped text.
+     *
+     * @param b
+     *            destination
+     * @param text
+     *            text to escape
+     * @param key
+     *            <code>true</code> if the text is a key, all spaces are escaped
+     *            rather than only the leading one.
+     */
+    private static void escape(final StringBuilder b,
+        final String text,
+        final boolean key) {
+
+        for (int i = 0; i < text.length(); ++i) {
+            final char c = text.charAt(i);
+            switch (c) {
+            case ' ':
+                if (key || i == 0) {
+                    b.append('\\');
+                }
+                b.append(c);
+                break;
+            case '\t':
+                b.append("\\t");
+                break;
+            case '\n':
+                b.append("\\n");
+                break;
+            case '\r':
+                b.append("\\r");
+                break;
+            case '\f':
+                b.append("\\f");
+                break;
+            case '\\':
+            case '=':
+            case ':':
+            case '#':
+            case '!':
+                b.append('\\').append(c);
+                break;
+            default:
+                if (c < 0x20 || c > 0x7e) {
+                    b.append("\\u").append(HEX[c >> 12 & 0xf]).append(HEX[c >> 8 & 0xf]).append(HEX[c >> 4 & 0xf]).append(HEX[c & 0xf]);
+                } else {
+                    b.append(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Formats the preferences.
+     *
+     * @param preferences
+     *            preferences
+     * @return content of the prefs file
+     */
+    public static byte[] format(final Map<?, ?> preferences) {
+
+        final Map<String, String> sorted = new TreeMap<>();
+        for (final Map.Entry<?, ?> entry : preferences.entrySet()) {
+            sorted.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        final StringBuilder b = new StringBuilder(COMMENT);
+        for (final Map.Entry<String, String> entry : sorted.entrySet()) {
+            escape(b, entry.getKey(), true);
+            b.append('=');
+            escape(b, entry.getValue(), false);
+            b.append('\n');
+        }
+        return b.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private PreferencesWriter() {
+
+    }
+}
@@ -0,0 +1,110 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * <p>
+ * Reads the settings of an Eclipse profile XML file such as the ones exported
+ * from the formatter or clean up preference pages. The file is streamed so no
+ * DOM is built, the <code>id</code> and <code>value</code> attributes of the
+ * <code>setting</code> elements of the selected profile are put straight into
+ * the destination map.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public final class ProfileReader {
+
+    /**
+     * Shared XML input factory. Creating readers from a configured factory is
+     * thread-safe and this avoids the service lookup on every read.
+     */
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Reads the settings of a profile into the map.
+     *
+     * @param xmlStream
+     *            profile XML stream, it is not closed by this method.
+     * @param profileName
+     *            name of the profile to read, if <code>null</code> the first
+     *            profile is used.
+     * @param settings
+     *            receives the settings
+     * @throws IOException
+     *             I/O error, malformed XML or the profile is not found
+     */
+    public static void read(final InputStream xmlStream,
+        final String profileName,
+        final Map<Object, Object> settings) throws IOException {
+
+        try {
+            final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(xmlStream);
+            try {
+                boolean inProfile = false;
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        final String name = reader.getLocalName();
+                        if ("profile".equals(name) && (profileName == null || profileName.equals(reader.getAttributeValue(null, "name")))) {
+                            inProfile = true;
+                        } else if (inProfile && "setting".equals(name)) {
+                            putSetting(reader, settings);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && inProfile && "profile".equals(reader.getLocalName())) {
+                        return;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (profileName == null) {
+            throw new IOException("no profile found");
+        }
+        throw new IOException("profile '" + profileName + "' not found");
+    }
+
+    /**
+     * Adds the setting the reader is positioned on. A setting without an id is
+     * ignored and a missing value is read as an empty string.
+     *
+     * @param reader
+     *            reader positioned on a <code>setting</code> element
+     * @param settings
+     *            receives the setting
+     */
+    private static void putSetting(final XMLStreamReader reader,
+        final Map<Object, Object> settings) {
+
+        final String id = reader.getAttributeValue(null, "id");
+        if (id == null) {
+            return;
+        }
+        final String value = reader.getAttributeValue(null, "value");
+        settings.put(id, value == null ? "" : value);
+    }
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private ProfileReader() {
+
+    }
+}
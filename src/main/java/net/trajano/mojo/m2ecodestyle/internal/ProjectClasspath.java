@@ -0,0 +1,100 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.DefaultDependencyResolutionRequest;
+import org.apache.maven.project.DependencyResolutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectDependenciesResolver;
+import org.eclipse.aether.graph.Dependency;
+
+/**
+ * Dependencies of a project. The goals do not require dependency resolution so
+ * they are resolved the first time they are needed.
+ */
+public final class ProjectClasspath {
+
+    /**
+     * Resolved dependencies, <code>null</code> until they are first requested.
+     */
+    private List<Dependency> dependencies;
+
+    /**
+     * Project.
+     */
+    private final MavenProject project;
+
+    /**
+     * Resolves the dependencies of the project.
+     */
+    private final ProjectDependenciesResolver resolver;
+
+    /**
+     * Maven session, <code>null</code> when running outside of Maven in which
+     * case there are no dependencies.
+     */
+    private final MavenSession session;
+
+    /**
+     * Constructs the class path.
+     *
+     * @param project
+     *            project
+     * @param session
+     *            Maven session, may be <code>null</code>
+     * @param resolver
+     *            resolves the dependencies of the project
+     */
+    public ProjectClasspath(final MavenProject project,
+        final MavenSession session,
+        final ProjectDependenciesResolver resolver) {
+
+        this.project = project;
+        this.session = session;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Gets the dependencies of the project in all scopes, resolving them on the
+     * first call.
+     *
+     * @return resolved dependencies
+     * @throws DependencyResolutionException
+     *             the dependencies could not be resolved
+     */
+    public synchronized List<Dependency> getDependencies() throws DependencyResolutionException {
+
+        if (dependencies != null) {
+            return dependencies;
+        }
+        if (session == null || project.getDependencies().isEmpty()) {
+            dependencies = Collections.emptyList();
+        } else {
+            dependencies = resolver.resolve(new DefaultDependencyResolutionRequest(project, session.getRepositorySession())).getDependencies();
+        }
+        return dependencies;
+    }
+
+    /**
+     * Gets the files of the test scope dependencies of the project, which
+     * include the compile scope ones.
+     *
+     * @return class path elements
+     * @throws DependencyResolutionException
+     *             the dependencies could not be resolved
+     */
+    public List<File> getFiles() throws DependencyResolutionException {
+
+        final List<File> files = new ArrayList<>();
+        for (final Dependency dependency : getDependencies()) {
+            if (dependency.getArtifact().getFile() != null) {
+                files.add(dependency.getArtifact().getFile());
+            }
+        }
+        return files;
+    }
+}
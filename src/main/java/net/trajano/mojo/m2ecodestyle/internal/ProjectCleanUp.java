@@ -0,0 +1,238 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.DependencyResolutionException;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.jface.text.BadLocationException;
+
+/**
+ * Applies a {@link JavaCleanUp} to the Java files of a project. When imports
+ * are organized, the {@link SymbolIndex} is built from the source roots of the
+ * project, the class path of the project and the JDK. The source roots of the
+ * reactor projects that are on the class path are used instead of their output.
+ * Main sources only see the main source roots and the compile time
+ * dependencies, test sources see everything.
+ */
+public final class ProjectCleanUp {
+
+    /**
+     * Extension of the files that are cleaned up.
+     */
+    private static final String JAVA_EXTENSION = "java";
+
+    /**
+     * Scopes of the dependencies that are visible to the main sources. An empty
+     * scope is the same as compile.
+     */
+    private static final Set<String> MAIN_SCOPES = new HashSet<>(Arrays.asList("", "compile", "provided", "system"));
+
+    /**
+     * Classifier of the test jars.
+     */
+    private static final String TESTS_CLASSIFIER = "tests";
+
+    /**
+     * Adds the source roots to the set as absolute files.
+     *
+     * @param sourceRoots
+     *            receives the source roots
+     * @param roots
+     *            source roots
+     * @param sourceDirectory
+     *            source directory of the build, may be <code>null</code>
+     */
+    private static void addRoots(final Set<File> sourceRoots,
+        final List<String> roots,
+        final String sourceDirectory) {
+
+        if (sourceDirectory != null) {
+            sourceRoots.add(new File(sourceDirectory).getAbsoluteFile());
+        }
+        for (final String root : roots) {
+            sourceRoots.add(new File(root).getAbsoluteFile());
+        }
+    }
+
+    /**
+     * Class path of the project.
+     */
+    private final ProjectClasspath classpath;
+
+    /**
+     * Clean up applied to the main Java files.
+     */
+    private final JavaCleanUp javaCleanUp;
+
+    /**
+     * Clean up applied to the Java files in the {@link #testSourceRoots}. It is
+     * the same as {@link #javaCleanUp} unless imports are organized.
+     */
+    private final JavaCleanUp testCleanUp;
+
+    /**
+     * Test source roots of the project.
+     */
+    private final Set<File> testSourceRoots = new LinkedHashSet<>();
+
+    /**
+     * Constructs the clean up.
+     *
+     * @param settings
+     *            clean up profile settings
+     * @param options
+     *            Java formatter options, used for the source level
+     * @param project
+     *            project
+     * @param session
+     *            Maven session, may be <code>null</code>
+     * @param classpath
+     *            class path of the project
+     * @throws DependencyResolutionException
+     *             the class path could not be resolved
+     */
+    public ProjectCleanUp(final Map<?, ?> settings,
+        final Map<?, ?> options,
+        final MavenProject project,
+        final MavenSession session,
+        final ProjectClasspath classpath) throws DependencyResolutionException {
+
+        this.classpath = classpath;
+        addRoots(testSourceRoots, project.getTestCompileSourceRoots(), project.getBuild().getTestSourceDirectory());
+        if ("true".equals(settings.get(JavaCleanUp.ORGANIZE_IMPORTS))) {
+            javaCleanUp = new JavaCleanUp(settings, options, createSymbolIndex(project, session, false));
+            testCleanUp = new JavaCleanUp(settings, options, createSymbolIndex(project, session, true));
+        } else {
+            javaCleanUp = new JavaCleanUp(settings, options, null);
+            testCleanUp = javaCleanUp;
+        }
+    }
+
+    /**
+     * Adds the entries that affect the result of the clean up to the
+     * fingerprint of the {@link FormatCache}.
+     *
+     * @param fingerprint
+     *            fingerprint options
+     * @throws DependencyResolutionException
+     *             the class path could not be resolved
+     */
+    public void addFingerprint(final Map<String, Object> fingerprint) throws DependencyResolutionException {
+
+        fingerprint.put("cleanup:actions", javaCleanUp.getActions().toString());
+        if (javaCleanUp.getActions().contains(JavaCleanUp.ORGANIZE_IMPORTS)) {
+            // the imports that are added depend on the class path
+            fingerprint.put("cleanup:classpath", classpath.getFiles().toString());
+        }
+    }
+
+    /**
+     * Cleans up the content if the file is a Java file.
+     *
+     * @param file
+     *            file
+     * @param content
+     *            content of the file
+     * @return cleaned up content, the same instance if there was nothing to
+     *         clean up.
+     * @throws BadLocationException
+     *             the clean up edits do not apply to the content
+     * @throws IOException
+     *             I/O error reading the symbol index
+     */
+    public String cleanUp(final File file,
+        final String content) throws BadLocationException,
+        IOException {
+
+        if (!JAVA_EXTENSION.equals(FormatterRegistry.getExtension(file))) {
+            return content;
+        }
+        final Path path = file.getAbsoluteFile().toPath();
+        for (final File root : testSourceRoots) {
+            if (path.startsWith(root.toPath())) {
+                return testCleanUp.cleanUp(content);
+            }
+        }
+        return javaCleanUp.cleanUp(content);
+    }
+
+    /**
+     * Creates the index used to organize imports. Nothing is read until it is
+     * first used.
+     *
+     * @param project
+     *            project
+     * @param session
+     *            Maven session, may be <code>null</code>
+     * @param test
+     *            <code>true</code> to create the index for the test sources
+     * @return symbol index
+     * @throws DependencyResolutionException
+     *             the class path could not be resolved
+     */
+    private SymbolIndex createSymbolIndex(final MavenProject project,
+        final MavenSession session,
+        final boolean test) throws DependencyResolutionException {
+
+        final Set<File> sourceRoots = new LinkedHashSet<>();
+        addRoots(sourceRoots, project.getCompileSourceRoots(), project.getBuild().getSourceDirectory());
+        if (test) {
+            sourceRoots.addAll(testSourceRoots);
+        }
+        final Map<String, MavenProject> reactorProjects = new HashMap<>();
+        if (session != null) {
+            for (final MavenProject reactorProject : session.getProjects()) {
+                reactorProjects.put(reactorProject.getGroupId() + ":" + reactorProject.getArtifactId() + ":" + reactorProject.getVersion(), reactorProject);
+            }
+        }
+        final List<File> files = new ArrayList<>();
+        for (final Dependency dependency : classpath.getDependencies()) {
+            if (!test && !MAIN_SCOPES.contains(dependency.getScope())) {
+                continue;
+            }
+            final Artifact artifact = dependency.getArtifact();
+            if (artifact.getFile() != null) {
+                files.add(artifact.getFile());
+            }
+            final MavenProject reactorProject = reactorProjects.get(artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getBaseVersion());
+            if (reactorProject == null) {
+                continue;
+            }
+            if (TESTS_CLASSIFIER.equals(artifact.getClassifier())) {
+                addRoots(sourceRoots, reactorProject.getTestCompileSourceRoots(), null);
+            } else {
+                addRoots(sourceRoots, reactorProject.getCompileSourceRoots(), null);
+            }
+        }
+        final File directory;
+        if (session == null || session.getRequest().getLocalRepositoryPath() == null) {
+            directory = new File(project.getBuild().getDirectory(), "m2e-codestyle/symbols");
+        } else {
+            directory = new File(session.getRequest().getLocalRepositoryPath(), ".cache/m2e-codestyle/symbols");
+        }
+        return SymbolIndex.create(session == null ? null : session.getRequest(), sourceRoots, files, directory);
+    }
+
+    /**
+     * Checks if at least one supported action is enabled.
+     *
+     * @return <code>true</code> if the clean up does something
+     */
+    public boolean isEnabled() {
+
+        return javaCleanUp.isEnabled();
+    }
+}
@@ -0,0 +1,350 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * On-disk cache of resources fetched over HTTP. Each entry is stored as a
+ * content file along with a properties file holding the <code>ETag</code> and
+ * <code>Last-Modified</code> values sent by the server and the time it was last
+ * validated.
+ * </p>
+ * <p>
+ * Entries younger than the time to live are served without contacting the
+ * server. Older entries are revalidated with a conditional request. When
+ * offline, entries are served regardless of their age. If the server cannot be
+ * reached, a stale entry is served rather than failing the build.
+ * </p>
+ * <p>
+ * This class is thread-safe. Files are replaced by moving a temporary file over
+ * them so concurrent builds sharing the local repository do not see partially
+ * written entries.
+ * </p>
+ */
+public final class RemoteCache {
+
+    /**
+     * Metadata key for the content length.
+     */
+    private static final String CONTENT_LENGTH = "length";
+
+    /**
+     * Metadata key for the entity tag.
+     */
+    private static final String ETAG = "etag";
+
+    /**
+     * Metadata key for the last modified header value.
+     */
+    private static final String LAST_MODIFIED = "lastModified";
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(RemoteCache.class);
+
+    /**
+     * Metadata key for the URI. Only used to make the cache easier to inspect.
+     */
+    private static final String URI_KEY = "uri";
+
+    /**
+     * Metadata key for the time the entry was last fetched or validated.
+     */
+    private static final String VALIDATED = "validated";
+
+    /**
+     * Checks if the URI is handled by the cache.
+     *
+     * @param uri
+     *            URI
+     * @return <code>true</code> if the URI is an HTTP or HTTPS URI.
+     */
+    public static boolean isCacheable(final URI uri) {
+
+        return "http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme());
+    }
+
+    /**
+     * Reads the full content of a stream.
+     *
+     * @param is
+     *            input stream, it is not closed.
+     * @return content
+     * @throws IOException
+     *             I/O error
+     */
+    private static byte[] readFully(final InputStream is) throws IOException {
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int c = is.read(buffer);
+        while (c != -1) {
+            baos.write(buffer, 0, c);
+            c = is.read(buffer);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Cache directory.
+     */
+    private final File directory;
+
+    /**
+     * Serve entries without contacting the server.
+     */
+    private final boolean offline;
+
+    /**
+     * Connect and read timeout in milliseconds.
+     */
+    private final int timeout;
+
+    /**
+     * Time to live of the entries in milliseconds.
+     */
+    private final long ttl;
+
+    /**
+     * Constructs the cache.
+     *
+     * @param directory
+     *            cache directory, created when the first entry is stored.
+     * @param ttl
+     *            time to live of the entries in milliseconds
+     * @param offline
+     *            serve entries without contacting the server
+     * @param timeout
+     *            connect and read timeout in milliseconds
+     */
+    public RemoteCache(final File directory,
+        final long ttl,
+        final boolean offline,
+        final int timeout) {
+
+        this.directory = directory;
+        this.ttl = ttl;
+        this.offline = offline;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Fetches the resource from the server, sending the validators of the
+     * cached entry if there is one.
+     *
+     * @param uri
+     *            URI
+     * @param metadata
+     *            metadata of the cached entry or <code>null</code>
+     * @return connection that has received the response
+     * @throws IOException
+     *             I/O error
+     */
+    private HttpURLConnection connect(final URI uri,
+        final Properties metadata) throws IOException {
+
+        final HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        connection.setUseCaches(false);
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        if (metadata != null) {
+            if (metadata.getProperty(ETAG) != null) {
+                connection.setRequestProperty("If-None-Match", metadata.getProperty(ETAG));
+            }
+            if (metadata.getProperty(LAST_MODIFIED) != null) {
+                connection.setRequestProperty("If-Modified-Since", metadata.getProperty(LAST_MODIFIED));
+            }
+        }
+        connection.getResponseCode();
+        return connection;
+    }
+
+    /**
+     * Gets the content file of the entry.
+     *
+     * @param key
+     *            entry key
+     * @return content file
+     */
+    private File contentFile(final String key) {
+
+        return new File(directory, key + ".content");
+    }
+
+    /**
+     * Gets the metadata file of the entry.
+     *
+     * @param key
+     *            entry key
+     * @return metadata file
+     */
+    private File metadataFile(final String key) {
+
+        return new File(directory, key + ".properties");
+    }
+
+    /**
+     * Opens a stream to the resource.
+     *
+     * @param uri
+     *            HTTP or HTTPS URI
+     * @return stream or <code>null</code> if the server does not have the
+     *         resource.
+     * @throws IOException
+     *             I/O error or the resource is not cached when offline.
+     */
+    public InputStream open(final URI uri) throws IOException {
+
+        final String key = FormatCache.hash(uri.toString().getBytes(StandardCharsets.UTF_8));
+        final Properties metadata = readMetadata(key);
+        final byte[] cached = readContent(key, metadata);
+
+        if (offline) {
+            if (cached == null) {
+                throw new IOException(uri + " is not cached and the build is offline");
+            }
+            return new ByteArrayInputStream(cached);
+        }
+        if (cached != null && System.currentTimeMillis() - Long.parseLong(metadata.getProperty(VALIDATED, "0")) < ttl) {
+            LOG.debug("Serving {} from cache", uri);
+            return new ByteArrayInputStream(cached);
+        }
+
+        final HttpURLConnection connection;
+        try {
+            connection = connect(uri, cached == null ? null : metadata);
+        } catch (final IOException e) {
+            if (cached == null) {
+                throw e;
+            }
+            LOG.warn("Unable to reach {}, using cached copy: {}", uri, e.getMessage());
+            return new ByteArrayInputStream(cached);
+        }
+        try {
+            final int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                LOG.debug("Cached copy of {} is still valid", uri);
+                metadata.setProperty(VALIDATED, String.valueOf(System.currentTimeMillis()));
+                writeAtomically(metadataFile(key), metadata, null);
+                return new ByteArrayInputStream(cached);
+            }
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_GONE) {
+                return null;
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                if (cached == null) {
+                    throw new IOException("unexpected response " + responseCode + " from " + uri);
+                }
+                LOG.warn("Unable to reach {}, using cached copy: unexpected response {}", uri, responseCode);
+                return new ByteArrayInputStream(cached);
+            }
+
+            final byte[] content;
+            try (final InputStream is = connection.getInputStream()) {
+                content = readFully(is);
+            }
+            final Properties newMetadata = new Properties();
+            newMetadata.setProperty(URI_KEY, uri.toString());
+            newMetadata.setProperty(CONTENT_LENGTH, String.valueOf(content.length));
+            newMetadata.setProperty(VALIDATED, String.valueOf(System.currentTimeMillis()));
+            if (connection.getHeaderField("ETag") != null) {
+                newMetadata.setProperty(ETAG, connection.getHeaderField("ETag"));
+            }
+            if (connection.getHeaderField("Last-Modified") != null) {
+                newMetadata.setProperty(LAST_MODIFIED, connection.getHeaderField("Last-Modified"));
+            }
+            writeAtomically(contentFile(key), null, content);
+            writeAtomically(metadataFile(key), newMetadata, null);
+            return new ByteArrayInputStream(content);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Reads the content of the entry.
+     *
+     * @param key
+     *            entry key
+     * @param metadata
+     *            metadata of the entry
+     * @return content or <code>null</code> if the entry is missing or does not
+     *         match its metadata.
+     * @throws IOException
+     *             I/O error
+     */
+    private byte[] readContent(final String key,
+        final Properties metadata) throws IOException {
+
+        final File contentFile = contentFile(key);
+        if (metadata == null || !contentFile.isFile()) {
+            return null;
+        }
+        final byte[] content = Files.readAllBytes(contentFile.toPath());
+        if (!String.valueOf(content.length).equals(metadata.getProperty(CONTENT_LENGTH))) {
+            return null;
+        }
+        return content;
+    }
+
+    /**
+     * Reads the metadata of the entry.
+     *
+     * @param key
+     *            entry key
+     * @return metadata or <code>null</code> if the entry is missing.
+     * @throws IOException
+     *             I/O error
+     */
+    private Properties readMetadata(final String key) throws IOException {
+
+        final File metadataFile = metadataFile(key);
+        if (!metadataFile.isFile()) {
+            return null;
+        }
+        final Properties metadata = new Properties();
+        try (final InputStream is = Files.newInputStream(metadataFile.toPath())) {
+            metadata.load(is);
+        }
+        return metadata;
+    }
+
+    /**
+     * Writes the file using {@link AtomicFileWriter}.
+     *
+     * @param file
+     *            file to write
+     * @param properties
+     *            properties to store, if <code>null</code> the content is
+     *            written instead
+     * @param content
+     *            content to write
+     * @throws IOException
+     *             I/O error
+     */
+    private void writeAtomically(final File file,
+        final Properties properties,
+        final byte[] content) throws IOException {
+
+        if (properties != null) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            properties.store(baos, null);
+            AtomicFileWriter.write(file, baos.toByteArray());
+        } else {
+            AtomicFileWriter.write(file, content);
+        }
+    }
+}
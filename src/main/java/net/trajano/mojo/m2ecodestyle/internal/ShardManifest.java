@@ -0,0 +1,472 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Outcome of one shard of a format or check run, written as JSON so the shards
+ * run on different machines can be merged into a single verdict. The files are
+ * relative to the project base directory so the manifests do not depend on
+ * where the project was checked out.
+ * </p>
+ * <p>
+ * Instances are immutable.
+ * </p>
+ */
+public final class ShardManifest {
+
+    /**
+     * Reads the subset of JSON written by {@link ShardManifest#toJson()}:
+     * objects, arrays, strings, integers, booleans and <code>null</code>.
+     */
+    private static final class Parser {
+
+        /**
+         * Current position.
+         */
+        private int pos;
+
+        /**
+         * JSON text.
+         */
+        private final String text;
+
+        /**
+         * Creates the parser.
+         *
+         * @param text
+         *            JSON text
+         */
+        Parser(final String text) {
+
+            this.text = text;
+        }
+
+        /**
+         * Consumes the expected character after any white space.
+         *
+         * @param c
+         *            expected character
+         * @throws IOException
+         *             the character is not the expected one
+         */
+        private void expect(final char c) throws IOException {
+
+            if (peek() != c) {
+                throw new IOException(String.format("expected '%c' at offset %d", c, pos));
+            }
+            ++pos;
+        }
+
+        /**
+         * Skips white space and gets the next character without consuming it.
+         *
+         * @return next character
+         * @throws IOException
+         *             end of text
+         */
+        private char peek() throws IOException {
+
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                ++pos;
+            }
+            if (pos >= text.length()) {
+                throw new IOException("unexpected end of manifest");
+            }
+            return text.charAt(pos);
+        }
+
+        /**
+         * Reads a string.
+         *
+         * @return string
+         * @throws IOException
+         *             malformed string
+         */
+        private String readString() throws IOException {
+
+            expect('"');
+            final StringBuilder b = new StringBuilder();
+            while (pos < text.length()) {
+                final char c = text.charAt(pos++);
+                if (c == '"') {
+                    return b.toString();
+                }
+                if (c != '\\') {
+                    b.append(c);
+                } else if (pos < text.length()) {
+                    final char escaped = text.charAt(pos++);
+                    if (escaped == 'u' && pos + 4 <= text.length()) {
+                        b.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    } else if (escaped == 'n') {
+                        b.append('\n');
+                    } else if (escaped == 't') {
+                        b.append('\t');
+                    } else if (escaped == 'r') {
+                        b.append('\r');
+                    } else {
+                        b.append(escaped);
+                    }
+                }
+            }
+            throw new IOException("unterminated string");
+        }
+
+        /**
+         * Reads a value.
+         *
+         * @return {@link Map}, {@link List}, {@link String}, {@link Long},
+         *         {@link Boolean} or <code>null</code>
+         * @throws IOException
+         *             malformed value
+         */
+        Object readValue() throws IOException {
+
+            final char c = peek();
+            if (c == '{') {
+                ++pos;
+                final Map<String, Object> object = new LinkedHashMap<>();
+                if (peek() == '}') {
+                    ++pos;
+                    return object;
+                }
+                do {
+                    final String key = readString();
+                    expect(':');
+                    object.put(key, readValue());
+                } while (skip(','));
+                expect('}');
+                return object;
+            }
+            if (c == '[') {
+                ++pos;
+                final List<Object> array = new ArrayList<>();
+                if (peek() == ']') {
+                    ++pos;
+                    return array;
+                }
+                do {
+                    array.add(readValue());
+                } while (skip(','));
+                expect(']');
+                return array;
+            }
+            if (c == '"') {
+                return readString();
+            }
+            for (final String literal : new String[] {
+                "true",
+                "false",
+                "null"
+            }) {
+                if (text.startsWith(literal, pos)) {
+                    pos += literal.length();
+                    return "null".equals(literal) ? null : Boolean.valueOf(literal);
+                }
+            }
+            final int start = pos;
+            while (pos < text.length() && (text.charAt(pos) == '-' || Character.isDigit(text.charAt(pos)))) {
+                ++pos;
+            }
+            try {
+                return Long.valueOf(text.substring(start, pos));
+            } catch (final NumberFormatException e) {
+                throw new IOException("unexpected value at offset " + start, e);
+            }
+        }
+
+        /**
+         * Consumes the character if it is next.
+         *
+         * @param c
+         *            character
+         * @return <code>true</code> if it was consumed
+         * @throws IOException
+         *             end of text
+         */
+        private boolean skip(final char c) throws IOException {
+
+            if (peek() == c) {
+                ++pos;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Gets the shard of a file. The hash of the path relative to the project
+     * base directory is used so every machine computes the same partition.
+     *
+     * @param path
+     *            path relative to the project base directory using slashes
+     * @param shardCount
+     *            number of shards
+     * @return shard index
+     */
+    public static int shardOf(final String path,
+        final int shardCount) {
+
+        return Math.floorMod(path.hashCode(), shardCount);
+    }
+
+    /**
+     * Gets a value of the manifest.
+     *
+     * @param manifest
+     *            parsed manifest
+     * @param key
+     *            key
+     * @param type
+     *            expected type
+     * @return value
+     * @throws IOException
+     *             the value is missing or of the wrong type
+     */
+    private static <T> T get(final Map<?, ?> manifest,
+        final String key,
+        final Class<T> type) throws IOException {
+
+        final Object value = manifest.get(key);
+        if (!type.isInstance(value)) {
+            throw new IOException("missing or invalid \"" + key + "\"");
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * Gets a list of strings of the manifest.
+     *
+     * @param manifest
+     *            parsed manifest
+     * @param key
+     *            key
+     * @return strings
+     * @throws IOException
+     *             the value is missing or not a list of strings
+     */
+    private static List<String> getStrings(final Map<?, ?> manifest,
+        final String key) throws IOException {
+
+        final List<String> strings = new ArrayList<>();
+        for (final Object value : get(manifest, key, List.class)) {
+            if (!(value instanceof String)) {
+                throw new IOException("invalid \"" + key + "\"");
+            }
+            strings.add((String) value);
+        }
+        return strings;
+    }
+
+    /**
+     * Reads a manifest.
+     *
+     * @param file
+     *            manifest file
+     * @return manifest
+     * @throws IOException
+     *             I/O error or the file is not a valid manifest
+     */
+    public static ShardManifest read(final File file) throws IOException {
+
+        try {
+            final Object value = new Parser(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)).readValue();
+            if (!(value instanceof Map)) {
+                throw new IOException("not a JSON object");
+            }
+            final Map<?, ?> manifest = (Map<?, ?>) value;
+            return new ShardManifest(get(manifest, "project", String.class), get(manifest, "shardIndex", Long.class).intValue(), get(manifest, "shardCount", Long.class).intValue(), get(manifest, "scanned", Long.class).intValue(), get(manifest, "passed", Boolean.class), getStrings(manifest, "changed"), getStrings(manifest, "failures"));
+        } catch (final IOException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Files that were changed by the format goal or are not formatted for the
+     * check goal.
+     */
+    private final List<String> changed;
+
+    /**
+     * Files that failed to be processed along with the reason.
+     */
+    private final List<String> failures;
+
+    /**
+     * Whether the shard succeeded.
+     */
+    private final boolean passed;
+
+    /**
+     * Project identifier, <code>groupId:artifactId</code>.
+     */
+    private final String project;
+
+    /**
+     * Number of files the shard scanned.
+     */
+    private final int scanned;
+
+    /**
+     * Number of shards.
+     */
+    private final int shardCount;
+
+    /**
+     * Index of the shard.
+     */
+    private final int shardIndex;
+
+    /**
+     * Creates the manifest.
+     *
+     * @param project
+     *            project identifier
+     * @param shardIndex
+     *            index of the shard
+     * @param shardCount
+     *            number of shards
+     * @param scanned
+     *            number of files the shard scanned
+     * @param passed
+     *            whether the shard succeeded
+     * @param changed
+     *            files changed or not formatted, relative to the project base
+     *            directory
+     * @param failures
+     *            files that failed to be processed along with the reason
+     */
+    public ShardManifest(final String project,
+        final int shardIndex,
+        final int shardCount,
+        final int scanned,
+        final boolean passed,
+        final List<String> changed,
+        final List<String> failures) {
+
+        this.project = project;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.scanned = scanned;
+        this.passed = passed;
+        this.changed = Collections.unmodifiableList(new ArrayList<>(changed));
+        this.failures = Collections.unmodifiableList(new ArrayList<>(failures));
+    }
+
+    /**
+     * Gets the files that were changed or are not formatted.
+     *
+     * @return paths relative to the project base directory
+     */
+    public List<String> getChanged() {
+
+        return changed;
+    }
+
+    /**
+     * Gets the files that failed to be processed.
+     *
+     * @return paths followed by the reason
+     */
+    public List<String> getFailures() {
+
+        return failures;
+    }
+
+    /**
+     * Gets the project identifier.
+     *
+     * @return <code>groupId:artifactId</code>
+     */
+    public String getProject() {
+
+        return project;
+    }
+
+    /**
+     * Gets the number of files the shard scanned.
+     *
+     * @return number of files
+     */
+    public int getScanned() {
+
+        return scanned;
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return number of shards
+     */
+    public int getShardCount() {
+
+        return shardCount;
+    }
+
+    /**
+     * Gets the index of the shard.
+     *
+     * @return index starting at 0
+     */
+    public int getShardIndex() {
+
+        return shardIndex;
+    }
+
+    /**
+     * Checks if the shard succeeded.
+     *
+     * @return <code>true</code> if the goal did not fail on the shard
+     */
+    public boolean isPassed() {
+
+        return passed;
+    }
+
+    /**
+     * Formats the manifest as JSON.
+     *
+     * @return JSON
+     */
+    public String toJson() {
+
+        final StringBuilder b = new StringBuilder("{\n");
+        b.append("  \"project\": ").append(FormatMetrics.jsonString(project)).append(",\n");
+        b.append("  \"shardIndex\": ").append(shardIndex).append(",\n");
+        b.append("  \"shardCount\": ").append(shardCount).append(",\n");
+        b.append("  \"scanned\": ").append(scanned).append(",\n");
+        b.append("  \"passed\": ").append(passed).append(",\n");
+        b.append("  \"changed\": [");
+        for (int i = 0; i < changed.size(); ++i) {
+            b.append(i == 0 ? "\n" : ",\n").append("    ").append(FormatMetrics.jsonString(changed.get(i)));
+        }
+        b.append(changed.isEmpty() ? "],\n" : "\n  ],\n");
+        b.append("  \"failures\": [");
+        for (int i = 0; i < failures.size(); ++i) {
+            b.append(i == 0 ? "\n" : ",\n").append("    ").append(FormatMetrics.jsonString(failures.get(i)));
+        }
+        return b.append(failures.isEmpty() ? "]\n}\n" : "\n  ]\n}\n").toString();
+    }
+
+    /**
+     * Writes the manifest.
+     *
+     * @param file
+     *            manifest file
+     * @throws IOException
+     *             I/O error
+     */
+    public void write(final File file) throws IOException {
+
+        AtomicFileWriter.write(file, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,676 @@
+package net.trajano.mojo.m2ecodestyle.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * <p>
+ * Index of the public top level types that can be imported, keyed by their
+ * simple name. It covers the types declared in the source roots of the reactor,
+ * the jars of the class path and the <code>java</code> and <code>javax</code>
+ * packages of the running JDK.
+ * </p>
+ * <p>
+ * Nothing is read until the first lookup. The types of each jar are then stored
+ * in a segment file under the index directory, keyed by the path, size and
+ * modification time of the jar, so later modules and builds only have to map
+ * the file into memory. A segment is sorted by simple name and starts with a
+ * table of entry offsets so it is searched in place without being loaded.
+ * Mapped segments are shared by the whole JVM and the types of the source roots
+ * are shared by the modules of a build session.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public final class SymbolIndex {
+
+    /**
+     * Types of a jar or of the JDK, mapped from a segment file.
+     */
+    private static final class Segment {
+
+        /**
+         * Segment file content.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Number of entries.
+         */
+        private final int count;
+
+        /**
+         * Offset of the first entry.
+         */
+        private final int dataStart;
+
+        /**
+         * Wraps the segment file content.
+         *
+         * @param buffer
+         *            segment file content
+         * @throws IOException
+         *             the content is not a valid segment
+         */
+        Segment(final ByteBuffer buffer) throws IOException {
+
+            this.buffer = buffer;
+            try {
+                if (buffer.getInt(0) != MAGIC) {
+                    throw new IOException("not a symbol index segment");
+                }
+                count = buffer.getInt(4);
+                dataStart = 8 + 4 * (count + 1);
+                if (count < 0 || dataStart > buffer.limit() || dataStart + buffer.getInt(8 + 4 * count) != buffer.limit()) {
+                    throw new IOException("truncated symbol index segment");
+                }
+            } catch (final IndexOutOfBoundsException
+                | BufferUnderflowException e) {
+                throw new IOException("truncated symbol index segment", e);
+            }
+        }
+
+        /**
+         * Compares the simple name of an entry with the key.
+         *
+         * @param index
+         *            entry index
+         * @param key
+         *            simple name followed by the separator
+         * @return negative, zero or positive as the entry is before, matches or
+         *         is after the key
+         */
+        private int compare(final int index,
+            final byte[] key) {
+
+            final int start = dataStart + buffer.getInt(8 + 4 * index);
+            final int end = dataStart + buffer.getInt(8 + 4 * (index + 1));
+            for (int i = 0; i < key.length; ++i) {
+                if (start + i >= end) {
+                    return -1;
+                }
+                final int c = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Adds the fully qualified names of the types with the simple name.
+         *
+         * @param key
+         *            simple name followed by the separator
+         * @param simpleName
+         *            simple name
+         * @param names
+         *            receives the fully qualified names
+         */
+        void lookup(final byte[] key,
+            final String simpleName,
+            final Collection<String> names) {
+
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                final int mid = low + high >>> 1;
+                if (compare(mid, key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int i = low; i < count && compare(i, key) == 0; ++i) {
+                final int start = dataStart + buffer.getInt(8 + 4 * i) + key.length;
+                final byte[] packageName = new byte[dataStart + buffer.getInt(8 + 4 * (i + 1)) - start];
+                for (int j = 0; j < packageName.length; ++j) {
+                    packageName[j] = buffer.get(start + j);
+                }
+                names.add(new String(packageName, StandardCharsets.UTF_8) + "." + simpleName);
+            }
+        }
+    }
+
+    /**
+     * Class file access flag for public types.
+     */
+    private static final int ACC_PUBLIC = 0x0001;
+
+    /**
+     * Orders the entries by their UTF-8 bytes, the order used by the lookup.
+     */
+    private static final Comparator<byte[]> BYTE_ORDER = new Comparator<byte[]>() {
+
+        @Override
+        public int compare(final byte[] a,
+            final byte[] b) {
+
+            for (int i = 0; i < a.length && i < b.length; ++i) {
+                final int c = (a[i] & 0xff) - (b[i] & 0xff);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return a.length - b.length;
+        }
+    };
+
+    /**
+     * Key of the JDK segment.
+     */
+    private static final String JDK = "jdk";
+
+    /**
+     * Segment file magic number, changed when the format changes.
+     */
+    private static final int MAGIC = 0x53594d31;
+
+    /**
+     * Separates the simple name from the package name in an entry.
+     */
+    private static final char SEPARATOR = '\t';
+
+    /**
+     * Mapped segments keyed by the segment file path.
+     */
+    private static final ConcurrentMap<File, Segment> SEGMENTS = new ConcurrentHashMap<>();
+
+    /**
+     * Session that the source root types belong to.
+     */
+    private static WeakReference<Object> session = new WeakReference<>(null);
+
+    /**
+     * Types declared in the source roots of the current session, keyed by the
+     * source root and then by simple name.
+     */
+    private static final Map<File, Map<String, Set<String>>> SOURCE_TYPES = new HashMap<>();
+
+    /**
+     * Adds a public top level class from a class file to the entries.
+     *
+     * @param path
+     *            path of the class file relative to the class path root, using
+     *            slashes
+     * @param content
+     *            class file content
+     * @param entries
+     *            receives the entry
+     */
+    private static void addClass(final String path,
+        final byte[] content,
+        final Collection<byte[]> entries) {
+
+        final int slash = path.lastIndexOf('/');
+        final String simpleName = path.substring(slash + 1, path.length() - ".class".length());
+        if (slash < 0 || simpleName.indexOf('$') >= 0 || "package-info".equals(simpleName) || "module-info".equals(simpleName) || !isPublicClass(content)) {
+            return;
+        }
+        entries.add((simpleName + SEPARATOR + path.substring(0, slash).replace('/', '.')).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates an index.
+     *
+     * @param currentSession
+     *            object identifying the current build session
+     * @param sourceRoots
+     *            source roots of the reactor
+     * @param classpath
+     *            class path elements, directories are skipped as their types
+     *            come from the source roots
+     * @param directory
+     *            directory that stores the segment files
+     * @return index
+     */
+    public static SymbolIndex create(final Object currentSession,
+        final Collection<File> sourceRoots,
+        final Collection<File> classpath,
+        final File directory) {
+
+        synchronized (SOURCE_TYPES) {
+            if (session.get() != currentSession) {
+                SOURCE_TYPES.clear();
+                session = new WeakReference<>(currentSession);
+            }
+        }
+        return new SymbolIndex(sourceRoots, classpath, directory);
+    }
+
+    /**
+     * Checks if a class file declares a public class. The constant pool is
+     * skipped to get to the access flags.
+     *
+     * @param content
+     *            class file content
+     * @return <code>true</code> if the class is public
+     */
+    private static boolean isPublicClass(final byte[] content) {
+
+        final ByteBuffer b = ByteBuffer.wrap(content);
+        try {
+            if (b.getInt() != 0xCAFEBABE) {
+                return false;
+            }
+            b.position(8);
+            final int constants = b.getShort() & 0xffff;
+            for (int i = 1; i < constants; ++i) {
+                final int tag = b.get();
+                switch (tag) {
+                case 1:
+                    final int length = b.getShort() & 0xffff;
+                    b.position(b.position() + length);
+                    break;
+                case 5:
+                case 6:
+                    b.position(b.position() + 8);
+                    ++i;
+                    break;
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    b.position(b.position() + 2);
+                    break;
+                case 15:
+                    b.position(b.position() + 3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    b.position(b.position() + 4);
+                    break;
+                default:
+                    return false;
+                }
+            }
+            return (b.getShort() & ACC_PUBLIC) != 0;
+        } catch (final IllegalArgumentException
+            | BufferUnderflowException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks if a package of the JDK is part of the index. Only the
+     * <code>java</code> and <code>javax</code> packages are as the rest are
+     * implementation details that would make common names ambiguous.
+     *
+     * @param path
+     *            path of the class file relative to the module or jar root
+     * @return <code>true</code> if the class is to be indexed
+     */
+    private static boolean isJdkApi(final String path) {
+
+        return path.startsWith("java/") || path.startsWith("javax/");
+    }
+
+    /**
+     * Maps a segment file into memory.
+     *
+     * @param file
+     *            segment file
+     * @return segment
+     * @throws IOException
+     *             I/O error or the file is not a valid segment
+     */
+    private static Segment map(final File file) throws IOException {
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new Segment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads the public top level classes of the JDK, from
+     * <code>lib/rt.jar</code> up to Java 8 or from the <code>jrt</code> file
+     * system after.
+     *
+     * @param entries
+     *            receives the entries
+     * @throws IOException
+     *             I/O error
+     */
+    private static void readJdk(final Collection<byte[]> entries) throws IOException {
+
+        final File rtJar = new File(System.getProperty("java.home"), "lib/rt.jar");
+        if (rtJar.isFile()) {
+            readJar(rtJar, true, entries);
+            return;
+        }
+        final FileSystem jrt;
+        try {
+            jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        } catch (final FileSystemNotFoundException e) {
+            return;
+        }
+        final Path modules = jrt.getPath("/modules");
+        Files.walkFileTree(modules, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs) throws IOException {
+
+                if (file.getNameCount() > 2) {
+                    final String path = file.subpath(2, file.getNameCount()).toString();
+                    if (path.endsWith(".class") && isJdkApi(path)) {
+                        addClass(path, Files.readAllBytes(file), entries);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Reads the public top level classes of a jar.
+     *
+     * @param jar
+     *            jar
+     * @param jdk
+     *            <code>true</code> to only read the JDK API packages
+     * @param entries
+     *            receives the entries
+     * @throws IOException
+     *             I/O error
+     */
+    private static void readJar(final File jar,
+        final boolean jdk,
+        final Collection<byte[]> entries) throws IOException {
+
+        try (final ZipFile zip = new ZipFile(jar)) {
+            final Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+            while (zipEntries.hasMoreElements()) {
+                final ZipEntry entry = zipEntries.nextElement();
+                final String path = entry.getName();
+                if (entry.isDirectory() || !path.endsWith(".class") || path.startsWith("META-INF/") || jdk && !isJdkApi(path)) {
+                    continue;
+                }
+                try (final InputStream in = zip.getInputStream(entry)) {
+                    addClass(path, IOUtil.toByteArray(in), entries);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the types declared in a source root from the names of the Java
+     * files.
+     *
+     * @param root
+     *            source root
+     * @return fully qualified names keyed by simple name
+     * @throws IOException
+     *             I/O error
+     */
+    private static Map<String, Set<String>> readSourceRoot(final File root) throws IOException {
+
+        final Map<String, Set<String>> types = new HashMap<>();
+        if (!root.isDirectory()) {
+            return types;
+        }
+        final Path rootPath = root.toPath();
+        Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attrs) {
+
+                final String name = file.getFileName().toString();
+                if (!name.endsWith(".java") || "package-info.java".equals(name) || "module-info.java".equals(name)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                final String simpleName = name.substring(0, name.length() - ".java".length());
+                final Path parent = rootPath.relativize(file).getParent();
+                if (parent != null) {
+                    Set<String> names = types.get(simpleName);
+                    if (names == null) {
+                        names = new TreeSet<>();
+                        types.put(simpleName, names);
+                    }
+                    names.add(parent.toString().replace(File.separatorChar, '.') + "." + simpleName);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return types;
+    }
+
+    /**
+     * Writes a segment file.
+     *
+     * @param file
+     *            segment file
+     * @param entries
+     *            entries, sorted and without duplicates
+     * @throws IOException
+     *             I/O error
+     */
+    private static void writeSegment(final File file,
+        final Collection<byte[]> entries) throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            int offset = 0;
+            for (final byte[] entry : entries) {
+                out.writeInt(offset);
+                offset += entry.length;
+            }
+            out.writeInt(offset);
+            for (final byte[] entry : entries) {
+                out.write(entry);
+            }
+        }
+        AtomicFileWriter.write(file, bytes.toByteArray());
+    }
+
+    /**
+     * Class path elements.
+     */
+    private final List<File> classpath;
+
+    /**
+     * Directory that stores the segment files.
+     */
+    private final File directory;
+
+    /**
+     * Segments of the class path and the JDK, <code>null</code> until the first
+     * lookup.
+     */
+    private volatile List<Segment> segments;
+
+    /**
+     * Source roots of the reactor.
+     */
+    private final List<File> sourceRoots;
+
+    /**
+     * Types declared in the source roots, <code>null</code> until the first
+     * lookup.
+     */
+    private volatile List<Map<String, Set<String>>> sourceTypes;
+
+    /**
+     * Creates the index.
+     *
+     * @param sourceRoots
+     *            source roots of the reactor
+     * @param classpath
+     *            class path elements
+     * @param directory
+     *            directory that stores the segment files
+     */
+    private SymbolIndex(final Collection<File> sourceRoots,
+        final Collection<File> classpath,
+        final File directory) {
+
+        this.sourceRoots = new ArrayList<>(sourceRoots);
+        this.classpath = new ArrayList<>(classpath);
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the segment for a jar or the JDK, building the segment file if it is
+     * missing or not valid.
+     *
+     * @param jar
+     *            jar or <code>null</code> for the JDK
+     * @return mapped segment
+     * @throws IOException
+     *             I/O error
+     */
+    private Segment getSegment(final File jar) throws IOException {
+
+        final String key = jar == null ? JDK + SEPARATOR + System.getProperty("java.home") + SEPARATOR + System.getProperty("java.version") : jar.getAbsolutePath() + SEPARATOR + jar.length() + SEPARATOR + jar.lastModified();
+        final File file = new File(directory, FormatCache.hash((MAGIC + key).getBytes(StandardCharsets.UTF_8)) + ".idx").getAbsoluteFile();
+        Segment segment = SEGMENTS.get(file);
+        if (segment != null) {
+            return segment;
+        }
+        synchronized (SEGMENTS) {
+            segment = SEGMENTS.get(file);
+            if (segment != null) {
+                return segment;
+            }
+            if (file.isFile()) {
+                try {
+                    segment = map(file);
+                } catch (final IOException e) {
+                    segment = null;
+                }
+            }
+            if (segment == null) {
+                final Set<byte[]> entries = new TreeSet<>(BYTE_ORDER);
+                if (jar == null) {
+                    readJdk(entries);
+                } else {
+                    readJar(jar, false, entries);
+                }
+                writeSegment(file, entries);
+                segment = map(file);
+            }
+            SEGMENTS.put(file, segment);
+            return segment;
+        }
+    }
+
+    /**
+     * Gets the segments, building them on first use.
+     *
+     * @return segments
+     * @throws IOException
+     *             I/O error
+     */
+    private List<Segment> getSegments() throws IOException {
+
+        List<Segment> ret = segments;
+        if (ret == null) {
+            ret = new ArrayList<>(classpath.size() + 1);
+            ret.add(getSegment(null));
+            for (final File element : classpath) {
+                if (element.isFile()) {
+                    ret.add(getSegment(element));
+                }
+            }
+            segments = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Gets the types of the source roots, reading them on first use.
+     *
+     * @return types of each source root
+     * @throws IOException
+     *             I/O error
+     */
+    private List<Map<String, Set<String>>> getSourceTypes() throws IOException {
+
+        List<Map<String, Set<String>>> ret = sourceTypes;
+        if (ret == null) {
+            ret = new ArrayList<>(sourceRoots.size());
+            for (final File root : sourceRoots) {
+                synchronized (SOURCE_TYPES) {
+                    Map<String, Set<String>> types = SOURCE_TYPES.get(root);
+                    if (types == null) {
+                        types = readSourceRoot(root);
+                        SOURCE_TYPES.put(root, types);
+                    }
+                    ret.add(types);
+                }
+            }
+            sourceTypes = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Gets the types with the simple name.
+     *
+     * @param simpleName
+     *            simple name
+     * @return fully qualified names, sorted
+     * @throws IOException
+     *             I/O error building the index
+     */
+    public Set<String> lookup(final String simpleName) throws IOException {
+
+        final Set<String> names = new TreeSet<>();
+        for (final Map<String, Set<String>> types : getSourceTypes()) {
+            final Set<String> sourceNames = types.get(simpleName);
+            if (sourceNames != null) {
+                names.addAll(sourceNames);
+            }
+        }
+        final byte[] key = (simpleName + SEPARATOR).getBytes(StandardCharsets.UTF_8);
+        for (final Segment segment : getSegments()) {
+            segment.lookup(key, simpleName, names);
+        }
+        return Collections.unmodifiableSet(names);
+    }
+}
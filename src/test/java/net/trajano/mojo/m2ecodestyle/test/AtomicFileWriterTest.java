@@ -0,0 +1,72 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+import net.trajano.mojo.m2ecodestyle.internal.AtomicFileWriter;
+
+public class AtomicFileWriterTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+
+        dir = File.createTempFile("atomic", "");
+        dir.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testPreservesPermissions() throws Exception {
+
+        final File file = new File(dir, "run.sh");
+        AtomicFileWriter.write(file, new byte[] {
+            1
+        });
+        final Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-x---");
+        try {
+            Files.setPosixFilePermissions(file.toPath(), permissions);
+        } catch (final UnsupportedOperationException e) {
+            Assume.assumeNoException(e);
+        }
+        AtomicFileWriter.write(file, new byte[] {
+            2
+        });
+        assertEquals(permissions, Files.getPosixFilePermissions(file.toPath()));
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+
+        final File file = new File(dir, "sub/Foo.java");
+        final BuildContext buildContext = Mockito.mock(BuildContext.class);
+        AtomicFileWriter.write(file, "class Foo {}".getBytes(StandardCharsets.UTF_8), buildContext);
+        AtomicFileWriter.write(file, "class Foo { }".getBytes(StandardCharsets.UTF_8), buildContext);
+        assertArrayEquals("class Foo { }".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(file.toPath()));
+        assertArrayEquals("no temporary files are left behind", new String[] {
+            "Foo.java"
+        }, file.getParentFile().list());
+        Mockito.verify(buildContext, Mockito.times(2)).refresh(file);
+    }
+}
@@ -0,0 +1,231 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.testing.MojoRule;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.CheckMojo;
+import net.trajano.mojo.m2ecodestyle.FormatMojo;
+import net.trajano.mojo.m2ecodestyle.MergeMojo;
+import net.trajano.mojo.m2ecodestyle.internal.ShardManifest;
+
+public class CheckMojoTest {
+
+    @Rule
+    public MojoRule rule = new MojoRule();
+
+    @Test
+    public void testCheckAfterFormat() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyDirectoryStructure(new File("src/it/javaconvention"), temp);
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            final File badFile = new File(temp, "src/main/java/BadlyFormatted.java");
+            FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), badFile);
+
+            final FormatMojo formatMojo = (FormatMojo) rule.lookupConfiguredMojo(temp, "format");
+            final File metricsReport = new File(temp, "target/format-metrics.csv");
+            rule.setVariableValueToObject(formatMojo, "metricsReport", metricsReport);
+            formatMojo.execute();
+            assertTrue(FileUtils.fileRead(metricsReport).startsWith("type,name,value\n"));
+
+            final CheckMojo checkMojo = (CheckMojo) rule.lookupConfiguredMojo(temp, "check");
+            checkMojo.execute();
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    @Test
+    public void testCheckFailsWithoutWriting() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyDirectoryStructure(new File("src/it/javaconvention"), temp);
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            final File badFile = new File(temp, "src/main/java/BadlyFormatted.java");
+            FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), badFile);
+
+            final CheckMojo mojo = (CheckMojo) rule.lookupConfiguredMojo(temp, "check");
+            try {
+                mojo.execute();
+                fail("expected failure");
+            } catch (final MojoFailureException e) {
+                assertTrue(e.getMessage().contains(badFile.toString()));
+            }
+            assertEquals(FileUtils.fileRead("src/test/resources/BadlyFormatted.java"), FileUtils.fileRead(badFile));
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    @Test
+    public void testCompileSourceRoots() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyDirectoryStructure(new File("src/it/javaconvention"), temp);
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            final File extraFile = new File(temp, "src/extra/java/Extra.java");
+            FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), extraFile);
+            final File excludedFile = new File(temp, "src/extra/java/Excluded.java");
+            FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), excludedFile);
+            final File generatedFile = new File(temp, "target/generated-sources/foo/Generated.java");
+            FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), generatedFile);
+
+            // only the source and test source directories are formatted by default
+            rule.lookupConfiguredMojo(temp, "format").execute();
+            assertEquals(FileUtils.fileRead("src/test/resources/BadlyFormatted.java"), FileUtils.fileRead(extraFile));
+
+            final CheckMojo mojo = (CheckMojo) rule.lookupConfiguredMojo(temp, "check");
+            final MavenProject project = (MavenProject) rule.getVariableValueFromObject(mojo, "project");
+            project.addCompileSourceRoot(new File(temp, "src/extra/java").getAbsolutePath());
+            project.addCompileSourceRoot(new File(temp, "target/generated-sources/foo").getAbsolutePath());
+            rule.setVariableValueToObject(mojo, "excludes", new String[] {
+                "**/Excluded.java"
+            });
+            mojo.execute();
+
+            rule.setVariableValueToObject(mojo, "useCompileSourceRoots", true);
+            try {
+                mojo.execute();
+                fail("expected failure");
+            } catch (final MojoFailureException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("1 file(s) are not formatted"));
+                assertTrue(e.getMessage(), e.getMessage().contains(extraFile.toString()));
+            }
+
+            rule.setVariableValueToObject(mojo, "includeGeneratedSources", true);
+            try {
+                mojo.execute();
+                fail("expected failure");
+            } catch (final MojoFailureException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("2 file(s) are not formatted"));
+                assertTrue(e.getMessage(), e.getMessage().contains(generatedFile.toString()));
+            }
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyDirectoryStructure(new File("src/it/javaconvention"), temp);
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            for (int i = 0; i < 4; ++i) {
+                FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), new File(temp, "src/main/java/Bad" + i + ".java"));
+            }
+
+            final CheckMojo mojo = (CheckMojo) rule.lookupConfiguredMojo(temp, "check");
+            rule.setVariableValueToObject(mojo, "failFast", true);
+            rule.setVariableValueToObject(mojo, "threads", 1);
+            try {
+                mojo.execute();
+                fail("expected failure");
+            } catch (final MojoFailureException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("1 file(s) are not formatted"));
+            }
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    @Test
+    public void testMetricsWithoutFiles() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+
+            final CheckMojo mojo = (CheckMojo) rule.lookupConfiguredMojo(temp, "check");
+            final File metricsReport = new File(temp, "target/format-metrics.csv");
+            rule.setVariableValueToObject(mojo, "metricsReport", metricsReport);
+            mojo.execute();
+            assertTrue(FileUtils.fileRead(metricsReport).startsWith("type,name,value\n"));
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    @Test
+    public void testShards() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyDirectoryStructure(new File("src/it/javaconvention"), temp);
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            for (int i = 0; i < 4; ++i) {
+                FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), new File(temp, "src/main/java/Bad" + i + ".java"));
+            }
+
+            final File manifestDirectory = new File(temp, "target/m2e-codestyle");
+            final List<String> changed = new ArrayList<>();
+            int scanned = 0;
+            for (int i = 0; i < 3; ++i) {
+                final CheckMojo mojo = (CheckMojo) rule.lookupConfiguredMojo(temp, "check");
+                rule.setVariableValueToObject(mojo, "shardCount", 3);
+                rule.setVariableValueToObject(mojo, "shardIndex", i);
+                try {
+                    mojo.execute();
+                } catch (final MojoFailureException e) {
+                    // checked by the merge
+                }
+                final ShardManifest manifest = ShardManifest.read(new File(manifestDirectory, "shard-" + i + ".json"));
+                assertEquals(i, manifest.getShardIndex());
+                scanned += manifest.getScanned();
+                changed.addAll(manifest.getChanged());
+            }
+            assertEquals(7, scanned);
+            for (int i = 0; i < 4; ++i) {
+                assertEquals(1, Collections.frequency(changed, "src/main/java/Bad" + i + ".java"));
+            }
+
+            final MergeMojo merge = (MergeMojo) rule.lookupConfiguredMojo(temp, "merge");
+            rule.setVariableValueToObject(merge, "manifestDirectory", manifestDirectory);
+            try {
+                merge.execute();
+                fail("expected failure");
+            } catch (final MojoFailureException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("src/main/java/Bad0.java"));
+            }
+
+            new File(manifestDirectory, "shard-2.json").delete();
+            try {
+                merge.execute();
+                fail("expected failure");
+            } catch (final MojoFailureException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("missing manifest for shard 2 of 3"));
+            }
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.jdt.core.formatter.CodeFormatter;
+import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.internal.CodeFormatterCache;
+
+public class CodeFormatterCacheTest {
+
+    @Test
+    public void testSessionScope() {
+
+        final Object session = new Object();
+        assertNull(CodeFormatterCache.get(session, "key"));
+        final CodeFormatterCache entry = CodeFormatterCache.put("key", DefaultCodeFormatterConstants.getJavaConventionsSettings());
+        assertSame(entry, CodeFormatterCache.get(session, "key"));
+        assertSame(entry, CodeFormatterCache.put("key", DefaultCodeFormatterConstants.getEclipseDefaultSettings()));
+        assertNull("a new session clears the cache", CodeFormatterCache.get(new Object(), "key"));
+    }
+
+    @Test
+    public void testReuseFormatter() {
+
+        final CodeFormatterCache entry = CodeFormatterCache.put("reuse", DefaultCodeFormatterConstants.getJavaConventionsSettings());
+        final CodeFormatter codeFormatter = entry.acquire();
+        assertNotNull(codeFormatter);
+        entry.release(codeFormatter);
+        assertSame(codeFormatter, entry.acquire());
+    }
+}
@@ -1,12 +1,19 @@
 package net.trajano.mojo.m2ecodestyle.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.logging.Log;
@@ -14,10 +21,16 @@ import org.apache.maven.plugin.testing.MojoRule;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.sonatype.plexus.build.incremental.BuildContext;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
 
 import net.trajano.commons.testing.UtilityClassTestUtil;
 import net.trajano.mojo.m2ecodestyle.ConfigureMojo;
+import net.trajano.mojo.m2ecodestyle.Retrieval;
+import net.trajano.mojo.m2ecodestyle.internal.AtomicFileWriter;
 import net.trajano.mojo.m2ecodestyle.internal.PreferenceFileName;
+import net.trajano.mojo.m2ecodestyle.internal.PreferencesWriter;
+import net.trajano.mojo.m2ecodestyle.internal.ProfileReader;
 
 public class ConfigureMojoTest {
 
@@ -27,7 +40,10 @@ public class ConfigureMojoTest {
     @Test
     public void coverUtilityClasses() throws ReflectiveOperationException {
 
+        UtilityClassTestUtil.assertUtilityClassWellDefined(AtomicFileWriter.class);
         UtilityClassTestUtil.assertUtilityClassWellDefined(PreferenceFileName.class);
+        UtilityClassTestUtil.assertUtilityClassWellDefined(PreferencesWriter.class);
+        UtilityClassTestUtil.assertUtilityClassWellDefined(ProfileReader.class);
     }
 
     @Test
@@ -82,6 +98,31 @@ public class ConfigureMojoTest {
         }
     }
 
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testFetchAndMerge() throws Exception {
+
+        final File testPom = new File("src/test/resources/pom.xml");
+        final File tmp = File.createTempFile("test", "test");
+        tmp.delete();
+        try {
+            tmp.mkdir();
+            final ConfigureMojo mojo = (ConfigureMojo) rule.lookupMojo("configure", testPom);
+            rule.setVariableValueToObject(mojo, "destDir", tmp);
+            final File prefs = new File(tmp, "org.eclipse.jdt.core.prefs");
+            FileUtils.writeStringToFile(prefs, "zz.existing=1\n", "ISO-8859-1");
+            mojo.fetchAndMerge(new File("src/test/resources/codestyle/").toURI(), "org.eclipse.jdt.core.prefs");
+            mojo.fetchAndMerge(new File("src/test/resources/codestyle/").toURI(), "missing.prefs");
+
+            final String content = FileUtils.readFileToString(prefs, "ISO-8859-1");
+            assertTrue(content.startsWith("#Generated by m2e codestyle maven plugin\n"));
+            assertTrue(content.endsWith("zz.existing=1\n"));
+            assertFalse(new File(tmp, "missing.prefs").exists());
+        } finally {
+            FileUtils.deleteDirectory(tmp);
+        }
+    }
+
     @Test
     public void testImplicitSlash() throws Exception {
 
@@ -206,6 +247,71 @@ public class ConfigureMojoTest {
         }
     }
 
+    @Test
+    public void testSkipUnchanged() throws Exception {
+
+        System.setProperty("eclipse.startTime", String.valueOf(System.currentTimeMillis()));
+        final File testPom = new File("src/test/resources/pom.xml");
+
+        final File tmp = File.createTempFile("test", "test");
+        tmp.delete();
+        try {
+            tmp.mkdir();
+            final File settingsFolder = new File(tmp, "settings");
+            final File stateFile = new File(tmp, "configure.state");
+            final BuildContext buildContext = Mockito.spy(new DefaultBuildContext());
+            Mockito.when(buildContext.isIncremental()).thenReturn(true);
+
+            ConfigureMojo mojo = (ConfigureMojo) rule.lookupMojo("configure", testPom);
+            rule.setVariableValueToObject(mojo, "destDir", settingsFolder);
+            rule.setVariableValueToObject(mojo, "stateFile", stateFile);
+            rule.setVariableValueToObject(mojo, "buildContext", buildContext);
+            mojo.execute();
+            assertTrue(stateFile.exists());
+            final String state = FileUtils.readFileToString(stateFile);
+
+            final File prefs = new File(settingsFolder, "org.eclipse.jdt.core.prefs");
+            final String skipped = "Configuration, fetched content and prefs files are unchanged, skipping";
+            Log log = mock(Log.class);
+            mojo = (ConfigureMojo) rule.lookupMojo("configure", testPom);
+            rule.setVariableValueToObject(mojo, "destDir", settingsFolder);
+            rule.setVariableValueToObject(mojo, "stateFile", stateFile);
+            rule.setVariableValueToObject(mojo, "buildContext", buildContext);
+            mojo.setLog(log);
+            mojo.execute();
+            verify(log).debug(skipped);
+
+            log = mock(Log.class);
+            mojo.setLog(log);
+            rule.setVariableValueToObject(mojo, "force", true);
+            mojo.execute();
+            verify(log, never()).debug(skipped);
+            assertEquals("state does not change for the same inputs", state, FileUtils.readFileToString(stateFile));
+
+            FileUtils.write(prefs, "modified=true\n");
+            mojo = (ConfigureMojo) rule.lookupMojo("configure", testPom);
+            rule.setVariableValueToObject(mojo, "destDir", settingsFolder);
+            rule.setVariableValueToObject(mojo, "stateFile", stateFile);
+            rule.setVariableValueToObject(mojo, "buildContext", buildContext);
+            mojo.execute();
+            final String merged = FileUtils.readFileToString(prefs);
+            assertTrue(merged.contains("modified=true"));
+            assertTrue("prefs file is merged again after a change", merged.contains("org.eclipse.jdt.core"));
+
+            final Retrieval retrieval = mock(Retrieval.class);
+            Mockito.when(retrieval.fetchPreferences(Mockito.any(URI.class), Mockito.anyListOf(String.class))).thenReturn(Collections.<String, Future<byte[]>> singletonMap("org.eclipse.jdt.core.prefs", CompletableFuture.completedFuture("changed.remotely=true\n".getBytes(StandardCharsets.UTF_8))));
+            mojo = (ConfigureMojo) rule.lookupMojo("configure", testPom);
+            rule.setVariableValueToObject(mojo, "destDir", settingsFolder);
+            rule.setVariableValueToObject(mojo, "stateFile", stateFile);
+            rule.setVariableValueToObject(mojo, "buildContext", buildContext);
+            rule.setVariableValueToObject(mojo, "retrieval", retrieval);
+            mojo.execute();
+            assertTrue("prefs file is merged again after a remote change", FileUtils.readFileToString(prefs).contains("changed.remotely=true"));
+        } finally {
+            FileUtils.deleteDirectory(tmp);
+        }
+    }
+
     /**
      * This tests when the settings files already exists.
      *
@@ -0,0 +1,65 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.internal.EolNormalizingStream;
+
+public class EolNormalizingStreamTest {
+
+    private static byte[] writeBulk(final String s,
+        final int chunkSize) throws IOException {
+
+        final byte[] input = s.getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final EolNormalizingStream eol = new EolNormalizingStream(out, "\r\n")) {
+            for (int i = 0; i < input.length; i += chunkSize) {
+                eol.write(input, i, Math.min(chunkSize, input.length - i));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] writeSingle(final String s) throws IOException {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final EolNormalizingStream eol = new EolNormalizingStream(out, "\r\n")) {
+            for (final byte b : s.getBytes(StandardCharsets.UTF_8)) {
+                eol.write(b);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testBulkMatchesSingleByte() throws IOException {
+
+        final String[] inputs = {
+            "",
+            "a",
+            "\n",
+            "\r\n",
+            "a\r\nb\nc",
+            "a\r\nb\nc\r",
+            "a\r\nb\nc\n",
+            "\r\n\r\n\n\nabc\r"
+        };
+        for (final String input : inputs) {
+            for (int chunkSize = 1; chunkSize <= 4; ++chunkSize) {
+                assertArrayEquals(input, writeSingle(input), writeBulk(input, chunkSize));
+            }
+        }
+    }
+
+    @Test
+    public void testNormalize() throws IOException {
+
+        assertEquals("a\r\nb\r\nc\r\n", new String(writeBulk("a\r\nb\nc", 1024), StandardCharsets.UTF_8));
+    }
+}
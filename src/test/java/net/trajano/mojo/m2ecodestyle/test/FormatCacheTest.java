@@ -0,0 +1,52 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.internal.FormatCache;
+
+public class FormatCacheTest {
+
+    @Test
+    public void testFingerprintChanges() {
+
+        final Map<?, ?> settings = DefaultCodeFormatterConstants.getJavaConventionsSettings();
+        final Map<Object, Object> options = new HashMap<Object, Object>(settings);
+        final String fingerprint = FormatCache.fingerprint(options, StandardCharsets.UTF_8);
+        assertNotEquals(fingerprint, FormatCache.fingerprint(options, StandardCharsets.ISO_8859_1));
+        options.put(DefaultCodeFormatterConstants.FORMATTER_TAB_CHAR, "tab");
+        assertNotEquals(fingerprint, FormatCache.fingerprint(options, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+
+        final File cacheFile = File.createTempFile("format", ".cache");
+        cacheFile.delete();
+        try {
+            final File file = new File("Foo.java");
+            final byte[] content = "class Foo {}".getBytes(StandardCharsets.UTF_8);
+
+            final FormatCache cache = FormatCache.load(cacheFile, "a");
+            assertFalse(cache.isFormatted(file, content));
+            cache.setFormatted(file, content);
+            assertTrue(cache.isFormatted(file, content));
+            cache.store();
+
+            assertTrue(FormatCache.load(cacheFile, "a").isFormatted(file, content));
+            assertFalse(FormatCache.load(cacheFile, "a").isFormatted(file, "class Foo { }".getBytes(StandardCharsets.UTF_8)));
+            assertFalse("fingerprint change invalidates the cache", FormatCache.load(cacheFile, "b").isFormatted(file, content));
+        } finally {
+            cacheFile.delete();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.internal.FormatMetrics;
+import net.trajano.mojo.m2ecodestyle.internal.FormatMetrics.Counter;
+import net.trajano.mojo.m2ecodestyle.internal.FormatMetrics.Phase;
+
+public class FormatMetricsTest {
+
+    @Test
+    public void testReports() {
+
+        final FormatMetrics metrics = new FormatMetrics(2);
+        metrics.add(Counter.SCANNED, 3);
+        metrics.add(Counter.CHANGED, 1);
+        metrics.addTime(Phase.FORMAT, 5000000L);
+        metrics.addTime(Phase.FORMAT, 7000000L);
+        metrics.fileTime(new File("A.java"), 1000000L);
+        metrics.fileTime(new File("B \"quoted\".java"), 9000000L);
+        metrics.fileTime(new File("C.java"), 3000000L);
+
+        assertEquals(12, metrics.getMillis(Phase.FORMAT));
+        assertEquals(Arrays.asList(new File("B \"quoted\".java"), new File("C.java")), metrics.getSlowestFiles());
+
+        final String json = metrics.toJson();
+        assertTrue(json, json.contains("\"scanned\": 3"));
+        assertTrue(json, json.contains("\"format\": 12"));
+        assertTrue(json, json.contains("{ \"file\": \"B \\\"quoted\\\".java\", \"millis\": 9 }"));
+
+        final String csv = metrics.toCsv();
+        assertTrue(csv, csv.startsWith("type,name,value\n"));
+        assertTrue(csv, csv.contains("counter,changed,1\n"));
+        assertTrue(csv, csv.contains("file,\"B \"\"quoted\"\".java\",9\n"));
+
+        assertTrue(metrics.summary().get(0).startsWith("Scanned 3 file(s), 0 skipped, 1 changed"));
+    }
+
+    @Test
+    public void testNoSlowestFiles() {
+
+        final FormatMetrics metrics = new FormatMetrics(0);
+        metrics.fileTime(new File("A.java"), 1000000L);
+        assertTrue(metrics.getSlowestFiles().isEmpty());
+        assertTrue(metrics.toJson().contains("\"slowest\": []"));
+    }
+}
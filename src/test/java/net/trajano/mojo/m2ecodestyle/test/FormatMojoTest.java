@@ -1,11 +1,28 @@
 package net.trajano.mojo.m2ecodestyle.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Map;
 
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugin.testing.MojoRule;
+import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.FileUtils;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.formatter.CodeFormatter;
@@ -14,10 +31,13 @@ import org.eclipse.jdt.internal.formatter.DefaultCodeFormatter;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.text.edits.TextEdit;
+import org.junit.Assume;
 import org.junit.Rule;
 import org.junit.Test;
 
 import net.trajano.mojo.m2ecodestyle.FormatMojo;
+import net.trajano.mojo.m2ecodestyle.LimitPolicy;
+import net.trajano.mojo.m2ecodestyle.internal.JavaScriptFormatter;
 
 public class FormatMojoTest {
 
@@ -42,10 +62,283 @@ public class FormatMojoTest {
 
         final File temp = File.createTempFile("Temp", ".java");
         FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), temp);
-        mojo.formatFile(temp, codeFormatter);
+        assertTrue(mojo.formatFile(temp, codeFormatter));
+        final long lastModified = temp.lastModified();
+        assertFalse("formatted file is not written again", mojo.formatFile(temp, codeFormatter));
+        assertEquals(lastModified, temp.lastModified());
         temp.delete();
     }
 
+    @Test
+    public void testFormatEmptyFile() throws Exception {
+
+        @SuppressWarnings("unchecked")
+        final CodeFormatter codeFormatter = new DefaultCodeFormatter(DefaultCodeFormatterConstants.getJavaConventionsSettings());
+        final FormatMojo mojo = (FormatMojo) rule.lookupConfiguredMojo(new File("src/test/resources/formatter"), "format");
+
+        final File temp = File.createTempFile("Empty", ".java");
+        try {
+            mojo.formatFile(temp, codeFormatter);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    @Test
+    public void testCleanUp() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            final File javaFile = new File(temp, "src/main/java/A.java");
+            javaFile.getParentFile().mkdirs();
+            FileUtils.fileWrite(javaFile, "import java.util.List;\n\nclass A {\n    int a(int x) {\n        return x;\n    }\n}\n");
+
+            final FormatMojo mojo = (FormatMojo) rule.lookupConfiguredMojo(temp, "format");
+            rule.setVariableValueToObject(mojo, "javaCleanupProfileXmlUrl", "codestyle/eclipse/java-cleanup.xml");
+            mojo.execute();
+            final String content = FileUtils.fileRead(javaFile);
+            assertFalse(content, content.contains("import"));
+            assertTrue(content, content.contains("int a(final int x)"));
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    @Test
+    public void testCleanUpOnlyIndexesTheModuleAndItsDependencies() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            final File javaFile = new File(temp, "src/main/java/app/User.java");
+            javaFile.getParentFile().mkdirs();
+            FileUtils.fileWrite(javaFile, "package app;\n\nclass User {\n    Widget widget;\n}\n");
+            final File widgetFile = new File(temp, "src/main/java/app/model/Widget.java");
+            widgetFile.getParentFile().mkdirs();
+            FileUtils.fileWrite(widgetFile, "package app.model;\n\npublic class Widget {\n}\n");
+            final File otherRoot = new File(temp, "other/src/main/java");
+            final File otherWidgetFile = new File(otherRoot, "other/Widget.java");
+            otherWidgetFile.getParentFile().mkdirs();
+            FileUtils.fileWrite(otherWidgetFile, "package other;\n\npublic class Widget {\n}\n");
+
+            final FormatMojo mojo = (FormatMojo) rule.lookupConfiguredMojo(temp, "format");
+            rule.setVariableValueToObject(mojo, "javaCleanupProfileXmlUrl", "codestyle/eclipse/java-cleanup.xml");
+            final MavenProject other = new MavenProject();
+            other.setGroupId("net.trajano.mojo.test");
+            other.setArtifactId("other");
+            other.setVersion("1.0.0-SNAPSHOT");
+            other.addCompileSourceRoot(otherRoot.getAbsolutePath());
+            final MavenSession session = (MavenSession) rule.getVariableValueFromObject(mojo, "session");
+            session.setProjects(Arrays.asList((MavenProject) rule.getVariableValueFromObject(mojo, "project"), other));
+            mojo.execute();
+            final String content = FileUtils.fileRead(javaFile);
+            assertTrue(content, content.contains("import app.model.Widget;"));
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    @Test
+    public void testFormatJavaScript() throws Exception {
+
+        final Field toolFactory = JavaScriptFormatter.class.getDeclaredField("toolFactory");
+        toolFactory.setAccessible(true);
+        final Object defaultToolFactory = toolFactory.get(null);
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            final File jsFile = new File(temp, "src/main/java/app.js");
+            jsFile.getParentFile().mkdirs();
+            FileUtils.fileWrite(jsFile, "var a = 1;   \nvar b = 2;\n");
+
+            final FormatMojo mojo = (FormatMojo) rule.lookupConfiguredMojo(temp, "format");
+            mojo.execute();
+            assertEquals("JSDT is not a dependency", "var a = 1;   \nvar b = 2;\n", FileUtils.fileRead(jsFile));
+
+            toolFactory.set(null, StubJavaScriptToolFactory.class.getName());
+            mojo.execute();
+            assertEquals("var a = 1;" + System.lineSeparator() + "var b = 2;" + System.lineSeparator(), FileUtils.fileRead(jsFile));
+        } finally {
+            toolFactory.set(null, defaultToolFactory);
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    @Test
+    public void testMetricsSummaryOnlyAtInfoWhenFilesAreProcessed() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), new File(temp, "src/main/java/Bad.java"));
+
+            final FormatMojo mojo = (FormatMojo) rule.lookupConfiguredMojo(temp, "format");
+            Log log = mock(Log.class);
+            mojo.setLog(log);
+            mojo.execute();
+            verify(log).info(startsWith("Scanned 1 file(s), 0 skipped"));
+
+            log = mock(Log.class);
+            mojo.setLog(log);
+            mojo.execute();
+            verify(log, never()).info(startsWith("Scanned"));
+            verify(log).debug(startsWith("Scanned 1 file(s), 1 skipped"));
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    @Test
+    public void testMaxFileSize() throws Exception {
+
+        @SuppressWarnings("unchecked")
+        final CodeFormatter codeFormatter = new DefaultCodeFormatter(DefaultCodeFormatterConstants.getJavaConventionsSettings());
+        final FormatMojo mojo = (FormatMojo) rule.lookupConfiguredMojo(new File("src/test/resources/formatter"), "format");
+        rule.setVariableValueToObject(mojo, "maxFileSize", 10L);
+
+        final File temp = File.createTempFile("Huge", ".java");
+        try {
+            FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), temp);
+            final long length = temp.length();
+            assertFalse(mojo.formatFile(temp, codeFormatter));
+            assertEquals(length, temp.length());
+
+            rule.setVariableValueToObject(mojo, "limitPolicy", LimitPolicy.FAIL);
+            try {
+                mojo.formatFile(temp, codeFormatter);
+                fail("expected failure");
+            } catch (final MojoFailureException e) {
+                assertTrue(e.getMessage().contains("maximum file size"));
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    @Test
+    public void testChangedRegionsOnly() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            final File regionFile = new File(temp, "src/main/java/Region.java");
+            regionFile.getParentFile().mkdirs();
+            FileUtils.fileWrite(regionFile, "class Region {\n    int  a( ) { return 1 ; }\n    int  b( ) { return 2 ; }\n}\n");
+            for (final String[] command : new String[][] {
+                {
+                    "git",
+                    "init",
+                    "-q"
+                },
+                {
+                    "git",
+                    "add",
+                    "."
+                },
+                {
+                    "git",
+                    "-c",
+                    "user.name=test",
+                    "-c",
+                    "user.email=test@example.com",
+                    "commit",
+                    "-q",
+                    "-m",
+                    "base"
+                }
+            }) {
+                try {
+                    assertEquals(0, new ProcessBuilder(command).directory(temp).redirectErrorStream(true).start().waitFor());
+                } catch (final IOException e) {
+                    Assume.assumeNoException(e);
+                }
+            }
+            FileUtils.fileWrite(regionFile, "class Region {\n    int  a( ) { return 1 ; }\n    int  b( ) { return 3 ; }\n}\n");
+
+            final FormatMojo mojo = (FormatMojo) rule.lookupConfiguredMojo(temp, "format");
+            rule.setVariableValueToObject(mojo, "changedRegionsOnly", true);
+            mojo.execute();
+
+            final String formatted = FileUtils.fileRead(regionFile);
+            assertTrue(formatted, formatted.contains("int  a( ) { return 1 ; }"));
+            assertFalse(formatted, formatted.contains("return 3 ;"));
+            assertTrue(formatted, formatted.contains("return 3;"));
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+
+        @SuppressWarnings("unchecked")
+        final CodeFormatter codeFormatter = new DefaultCodeFormatter(DefaultCodeFormatterConstants.getJavaConventionsSettings()) {
+
+            @Override
+            public TextEdit format(final int kind,
+                final String source,
+                final int offset,
+                final int length,
+                final int indentationLevel,
+                final String lineSeparator) {
+
+                try {
+                    Thread.sleep(10000);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.format(kind, source, offset, length, indentationLevel, lineSeparator);
+            }
+        };
+        final FormatMojo mojo = (FormatMojo) rule.lookupConfiguredMojo(new File("src/test/resources/formatter"), "format");
+        rule.setVariableValueToObject(mojo, "timeout", 1);
+        rule.setVariableValueToObject(mojo, "limitPolicy", LimitPolicy.FAIL);
+
+        final File temp = File.createTempFile("Slow", ".java");
+        try {
+            FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), temp);
+            final long start = System.currentTimeMillis();
+            try {
+                mojo.formatFile(temp, codeFormatter);
+                fail("expected failure");
+            } catch (final MojoFailureException e) {
+                assertTrue(e.getMessage().contains("longer than 1 second(s)"));
+            }
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    @Test
+    public void testFormatWithEncoding() throws Exception {
+
+        @SuppressWarnings("unchecked")
+        final CodeFormatter codeFormatter = new DefaultCodeFormatter(DefaultCodeFormatterConstants.getJavaConventionsSettings());
+        final FormatMojo mojo = (FormatMojo) rule.lookupConfiguredMojo(new File("src/test/resources/formatter"), "format");
+        rule.setVariableValueToObject(mojo, "encoding", "ISO-8859-1");
+
+        final File temp = File.createTempFile("Latin", ".java");
+        try {
+            Files.write(temp.toPath(), "class Latin {  String s = \"h\u00e9llo\";}".getBytes(StandardCharsets.ISO_8859_1));
+            assertTrue(mojo.formatFile(temp, codeFormatter));
+            assertTrue(new String(Files.readAllBytes(temp.toPath()), StandardCharsets.ISO_8859_1).contains("\"h\u00e9llo\""));
+        } finally {
+            temp.delete();
+        }
+    }
+
     /**
      * Even with bad code, the Eclipse code formatter does not return
      * <code>null</code> anymore. So the exception expected no longer applies.
@@ -156,4 +449,49 @@ public class FormatMojoTest {
         edit.apply(document);
 
     }
+
+    /**
+     * Formatting with multiple threads must produce the same output as
+     * formatting serially.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParallelMatchesSerial() throws Exception {
+
+        final File serial = File.createTempFile("serial", "");
+        serial.delete();
+        serial.mkdir();
+        final File parallel = File.createTempFile("parallel", "");
+        parallel.delete();
+        parallel.mkdir();
+        try {
+            for (final File dir : new File[] {
+                serial,
+                parallel
+            }) {
+                FileUtils.copyDirectoryStructure(new File("src/it/javaconvention"), dir);
+                FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(dir, "pom.xml"));
+                for (int i = 0; i < 8; ++i) {
+                    FileUtils.copyFile(new File("src/test/resources/BadlyFormatted.java"), new File(dir, "src/main/java/Bad" + i + ".java"));
+                }
+            }
+
+            final FormatMojo serialMojo = (FormatMojo) rule.lookupConfiguredMojo(serial, "format");
+            rule.setVariableValueToObject(serialMojo, "threads", 1);
+            serialMojo.execute();
+
+            final FormatMojo parallelMojo = (FormatMojo) rule.lookupConfiguredMojo(parallel, "format");
+            rule.setVariableValueToObject(parallelMojo, "threads", 4);
+            parallelMojo.execute();
+
+            for (int i = 0; i < 8; ++i) {
+                final String name = "src/main/java/Bad" + i + ".java";
+                assertEquals(FileUtils.fileRead(new File(serial, name)), FileUtils.fileRead(new File(parallel, name)));
+            }
+        } finally {
+            FileUtils.deleteDirectory(serial);
+            FileUtils.deleteDirectory(parallel);
+        }
+    }
 }
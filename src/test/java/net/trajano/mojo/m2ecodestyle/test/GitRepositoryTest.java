@@ -0,0 +1,152 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.internal.GitRepository;
+
+/**
+ * Tests {@link GitRepository} against a repository created by the git
+ * executable. The tests are skipped if git is not available.
+ */
+public class GitRepositoryTest {
+
+    private File dir;
+
+    private void git(final String... args) throws IOException,
+        InterruptedException {
+
+        final String[] command = new String[args.length + 5];
+        command[0] = "git";
+        command[1] = "-c";
+        command[2] = "user.name=test";
+        command[3] = "-c";
+        command[4] = "user.email=test@example.com";
+        System.arraycopy(args, 0, command, 5, args.length);
+        final Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start();
+        IOUtil.toByteArray(process.getInputStream());
+        assertEquals(Arrays.toString(args), 0, process.waitFor());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+
+        dir = File.createTempFile("git", "");
+        dir.delete();
+        dir.mkdir();
+        try {
+            git("init", "-q");
+        } catch (final IOException e) {
+            Assume.assumeNoException(e);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testAutoCrlf() throws Exception {
+
+        git("config", "core.autocrlf", "true");
+        final File a = new File(dir, "A.java");
+        final File b = new File(dir, "B.java");
+        FileUtils.fileWrite(a, "class A {\n}\n");
+        FileUtils.fileWrite(b, "class B {\n}\n");
+        git("add", ".");
+        git("commit", "-q", "-m", "first");
+
+        final List<File> files = Arrays.asList(a, b);
+        FileUtils.fileWrite(a, "class A {\r\n}\r\n");
+        FileUtils.fileWrite(b, "class B {\r\n  int x;\r\n}\r\n");
+        assertEquals(Collections.singleton(b), GitRepository.find(dir).changedFiles("HEAD", files));
+
+        git("config", "core.autocrlf", "false");
+        assertEquals(new LinkedHashSet<>(files), GitRepository.find(dir).changedFiles("HEAD", files));
+    }
+
+    @Test
+    public void testAttributes() throws Exception {
+
+        git("config", "core.autocrlf", "false");
+        final File a = new File(dir, "src/A.java");
+        final File b = new File(dir, "src/B.dat");
+        final File c = new File(dir, "src/legacy/C.java");
+        c.getParentFile().mkdirs();
+        FileUtils.fileWrite(new File(dir, ".gitattributes"), "*.java text\n*.dat eol=crlf\n");
+        FileUtils.fileWrite(new File(dir, "src/legacy/.gitattributes"), "C.java -text\n");
+        FileUtils.fileWrite(a, "class A {\n}\n");
+        FileUtils.fileWrite(b, "data\n");
+        FileUtils.fileWrite(c, "class C {\n}\n");
+        git("add", ".");
+        git("commit", "-q", "-m", "first");
+
+        final List<File> files = Arrays.asList(a, b, c);
+        FileUtils.fileWrite(a, "class A {\r\n}\r\n");
+        FileUtils.fileWrite(b, "data\r\n");
+        FileUtils.fileWrite(c, "class C {\r\n}\r\n");
+        assertEquals(Collections.singleton(c), GitRepository.find(dir).changedFiles("HEAD", files));
+    }
+
+    @Test
+    public void testChangedFiles() throws Exception {
+
+        final File a = new File(dir, "src/A.java");
+        final File b = new File(dir, "src/B.java");
+        final File c = new File(dir, "src/C.java");
+        a.getParentFile().mkdirs();
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            large.append("line ").append(i).append('\n');
+        }
+        FileUtils.fileWrite(a, large.toString());
+        FileUtils.fileWrite(b, "class B {}\n");
+        git("add", ".");
+        git("commit", "-q", "-m", "first");
+        git("tag", "first");
+
+        FileUtils.fileWrite(a, large + "more\n");
+        git("commit", "-q", "-a", "-m", "second");
+        git("branch", "work");
+
+        final List<File> files = Arrays.asList(a, b, c);
+        FileUtils.fileWrite(c, "class C {}\n");
+        GitRepository repository = GitRepository.find(new File(dir, "src"));
+        assertNotNull(repository);
+        assertEquals(Collections.singleton(c), repository.changedFiles("HEAD", files));
+        assertEquals(new LinkedHashSet<>(Arrays.asList(a, c)), repository.changedFiles("first", files));
+
+        FileUtils.fileWrite(b, "class B { }\n");
+        assertEquals(new LinkedHashSet<>(Arrays.asList(b, c)), repository.changedFiles("work", files));
+
+        git("gc", "-q", "--aggressive");
+        repository = GitRepository.find(dir);
+        assertEquals(new LinkedHashSet<>(Arrays.asList(b, c)), repository.changedFiles(repository.resolve("HEAD"), files));
+        assertEquals(new LinkedHashSet<>(Arrays.asList(a, b, c)), repository.changedFiles("first", files));
+        assertNull(repository.resolve("nowhere"));
+
+        final Map<File, String> blobIds = repository.blobIds("first", files);
+        assertEquals(new LinkedHashSet<>(Arrays.asList(a, b)), blobIds.keySet());
+        assertEquals(large.toString(), new String(repository.readBlob(blobIds.get(a)), StandardCharsets.UTF_8));
+        assertEquals(large + "more\n", new String(repository.readBlob(repository.blobIds("HEAD", files).get(a)), StandardCharsets.UTF_8));
+    }
+}
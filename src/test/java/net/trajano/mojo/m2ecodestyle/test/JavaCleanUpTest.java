@@ -0,0 +1,142 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.internal.JavaCleanUp;
+import net.trajano.mojo.m2ecodestyle.internal.SymbolIndex;
+
+public class JavaCleanUpTest {
+
+    private static JavaCleanUp cleanUp(final String... keys) {
+
+        final Map<String, String> settings = new HashMap<>();
+        for (final String key : keys) {
+            settings.put(key, "true");
+        }
+        return new JavaCleanUp(settings, Collections.emptyMap(), null);
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        final JavaCleanUp cleanUp = cleanUp(JavaCleanUp.MAKE_PARAMETERS_FINAL);
+        assertFalse(cleanUp.isEnabled());
+        final String source = "class A { void a(int x) { } }\n";
+        assertSame(source, cleanUp.cleanUp(source));
+    }
+
+    @Test
+    public void testMakeFinal() throws Exception {
+
+        final JavaCleanUp cleanUp = cleanUp(JavaCleanUp.MAKE_VARIABLE_DECLARATIONS_FINAL, JavaCleanUp.MAKE_PARAMETERS_FINAL, JavaCleanUp.MAKE_LOCAL_VARIABLE_FINAL);
+        final String source = "class A {\n    int a(int x, @Deprecated int y, int z) {\n        int i = x;\n        int j = 0;\n        j++;\n        int k;\n        z = 1;\n        for (String s : new String[0]) {\n        }\n        return i + j + y + z;\n    }\n    abstract void b(int x);\n}\n";
+        final String expected = "class A {\n    int a(final int x, @Deprecated final int y, int z) {\n        final int i = x;\n        int j = 0;\n        j++;\n        int k;\n        z = 1;\n        for (final String s : new String[0]) {\n        }\n        return i + j + y + z;\n    }\n    abstract void b(int x);\n}\n";
+        assertEquals(expected, cleanUp.cleanUp(source));
+    }
+
+    @Test
+    public void testOrganizeImports() throws Exception {
+
+        final File sourceRoot = File.createTempFile("src", "");
+        sourceRoot.delete();
+        new File(sourceRoot, "a/b").mkdirs();
+        try {
+            FileUtils.fileWrite(new File(sourceRoot, "a/b/Foo.java"), "package a.b;\npublic class Foo {}\n");
+            final File junit = new File(Before.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            final SymbolIndex index = SymbolIndex.create(null, Collections.singleton(sourceRoot), Collections.singleton(junit), new File("target/symbols"));
+            final JavaCleanUp cleanUp = new JavaCleanUp(Collections.singletonMap(JavaCleanUp.ORGANIZE_IMPORTS, "true"), Collections.emptyMap(), index);
+
+            final String source = "package a;\n\nimport java.util.Map;\nimport java.util.Set;\nimport static java.util.Collections.emptyList;\n\nclass A<T> {\n    @Before\n    public void a() {\n        List<String> l = new ArrayList<>(emptyList());\n        Map<String, Foo> m = null;\n        String s = null;\n        Bar b = null;\n        T t = null;\n        Assume.assumeTrue(B.C);\n    }\n    class B { static final boolean C = true; }\n}\n";
+            final String expected = "package a;\n\nimport a.b.Foo;\nimport java.util.ArrayList;\nimport java.util.List;\nimport java.util.Map;\nimport org.junit.Assume;\nimport org.junit.Before;\nimport static java.util.Collections.emptyList;\n\nclass A<T> {\n    @Before\n    public void a() {\n        List<String> l = new ArrayList<>(emptyList());\n        Map<String, Foo> m = null;\n        String s = null;\n        Bar b = null;\n        T t = null;\n        Assume.assumeTrue(B.C);\n    }\n    class B { static final boolean C = true; }\n}\n";
+            assertEquals(expected, cleanUp.cleanUp(source));
+        } finally {
+            FileUtils.deleteDirectory(sourceRoot);
+        }
+    }
+
+    @Test
+    public void testOrganizeImportsIgnoresFieldQualifiers() throws Exception {
+
+        final File sourceRoot = File.createTempFile("src", "");
+        sourceRoot.delete();
+        new File(sourceRoot, "x").mkdirs();
+        try {
+            FileUtils.fileWrite(new File(sourceRoot, "x/BAR.java"), "package x;\npublic class BAR {}\n");
+            FileUtils.fileWrite(new File(sourceRoot, "x/LOG.java"), "package x;\npublic class LOG {}\n");
+            final SymbolIndex index = SymbolIndex.create(null, Collections.singleton(sourceRoot), Collections.<File> emptySet(), new File("target/symbols"));
+            final JavaCleanUp cleanUp = new JavaCleanUp(Collections.singletonMap(JavaCleanUp.ORGANIZE_IMPORTS, "true"), Collections.emptyMap(), index);
+
+            final String staticImport = "package a;\n\nimport static a.b.Constants.BAR;\n\nclass A {\n    void a() {\n        BAR.x();\n    }\n}\n";
+            assertEquals(staticImport, cleanUp.cleanUp(staticImport));
+            final String staticImportOnDemand = "package a;\n\nimport static a.b.Constants.*;\n\nclass A {\n    void a() {\n        BAR.x();\n    }\n}\n";
+            assertEquals(staticImportOnDemand, cleanUp.cleanUp(staticImportOnDemand));
+            final String declaredField = "package a;\n\nclass A {\n    static final Object LOG = null;\n    void a() {\n        LOG.toString();\n    }\n}\n";
+            assertEquals(declaredField, cleanUp.cleanUp(declaredField));
+            final String inheritedField = "package a;\n\nclass A extends Base {\n    void a() {\n        LOG.debug(BAR.x);\n        Runnable r = LOG::debug;\n    }\n}\n";
+            assertEquals(inheritedField, cleanUp.cleanUp(inheritedField));
+
+            final String type = "package a;\n\nclass A {\n    void a() {\n        LOG.debug();\n    }\n}\n";
+            assertEquals("package a;\n\nimport x.LOG;\n\nclass A {\n    void a() {\n        LOG.debug();\n    }\n}\n", cleanUp.cleanUp(type));
+        } finally {
+            FileUtils.deleteDirectory(sourceRoot);
+        }
+    }
+
+    @Test
+    public void testOrganizeImportsKeepsOnDemandType() throws Exception {
+
+        final SymbolIndex index = SymbolIndex.create(null, Collections.<File> emptySet(), Collections.<File> emptySet(), new File("target/symbols"));
+        final JavaCleanUp cleanUp = new JavaCleanUp(Collections.singletonMap(JavaCleanUp.ORGANIZE_IMPORTS, "true"), Collections.emptyMap(), index);
+
+        final String source = "package a;\n\nimport java.awt.Color;\nimport java.util.*;\n\nclass A {\n    List<Color> a;\n}\n";
+        assertEquals(source, cleanUp.cleanUp(source));
+    }
+
+    @Test
+    public void testOrganizeImportsKeepsSamePackageType() throws Exception {
+
+        final File sourceRoot = File.createTempFile("src", "");
+        sourceRoot.delete();
+        new File(sourceRoot, "com/x").mkdirs();
+        new File(sourceRoot, "p").mkdirs();
+        try {
+            FileUtils.fileWrite(new File(sourceRoot, "com/x/Node.java"), "package com.x;\npublic class Node {}\n");
+            FileUtils.fileWrite(new File(sourceRoot, "com/x/Other.java"), "package com.x;\npublic class Other {}\n");
+            FileUtils.fileWrite(new File(sourceRoot, "p/Node.java"), "package p;\npublic class Node {}\n");
+            final SymbolIndex index = SymbolIndex.create(null, Collections.singleton(sourceRoot), Collections.<File> emptySet(), new File("target/symbols"));
+            final JavaCleanUp cleanUp = new JavaCleanUp(Collections.singletonMap(JavaCleanUp.ORGANIZE_IMPORTS, "true"), Collections.emptyMap(), index);
+
+            final String source = "package p;\n\nimport com.x.Other;\n\nclass A {\n    Node a;\n    Other b;\n}\n";
+            assertEquals(source, cleanUp.cleanUp(source));
+        } finally {
+            FileUtils.deleteDirectory(sourceRoot);
+        }
+    }
+
+    @Test
+    public void testRemoveUnusedImports() throws Exception {
+
+        final JavaCleanUp cleanUp = cleanUp(JavaCleanUp.REMOVE_UNUSED_IMPORTS);
+        final String source = "import java.util.List;\nimport java.util.List;\nimport java.util.Map;\nimport java.util.Set;\nimport java.io.*;\nimport static java.util.Collections.emptyList;\nimport static java.util.Collections.emptySet;\n\n/** {@link Set} */\nclass A {\n    List<String> a = emptyList();\n}\n";
+        final String expected = "import java.util.List;\nimport java.util.Set;\nimport java.io.*;\nimport static java.util.Collections.emptyList;\n\n/** {@link Set} */\nclass A {\n    List<String> a = emptyList();\n}\n";
+        assertEquals(expected, cleanUp.cleanUp(source));
+    }
+
+    @Test
+    public void testSyntaxError() throws Exception {
+
+        final String source = "import java.util.List;\nclass A {\n";
+        assertSame(source, cleanUp(JavaCleanUp.REMOVE_UNUSED_IMPORTS).cleanUp(source));
+    }
+}
@@ -0,0 +1,76 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jface.text.IRegion;
+import org.junit.Test;
+
+import net.trajano.commons.testing.UtilityClassTestUtil;
+import net.trajano.mojo.m2ecodestyle.internal.LineDiff;
+
+public class LineDiffTest {
+
+    private static List<String> texts(final String text,
+        final IRegion[] regions) {
+
+        final List<String> texts = new ArrayList<>();
+        for (final IRegion region : regions) {
+            texts.add(text.substring(region.getOffset(), region.getOffset() + region.getLength()));
+        }
+        return texts;
+    }
+
+    @Test
+    public void coverUtilityClass() throws ReflectiveOperationException {
+
+        UtilityClassTestUtil.assertUtilityClassWellDefined(LineDiff.class);
+    }
+
+    @Test
+    public void testChangedLines() {
+
+        final String base = "a\nb\nc\nd\ne\nf\n";
+        final String current = "a\nB\nc\nd\nx\ny\ne\nf\n";
+        assertEquals(Arrays.asList("B", "x\ny"), texts(current, LineDiff.changedRegions(base, current)));
+    }
+
+    @Test
+    public void testLineEndingsOnly() {
+
+        assertEquals(0, LineDiff.changedRegions("a\nb\n", "a\r\nb\r\n").length);
+    }
+
+    @Test
+    public void testNewFile() {
+
+        assertEquals(Arrays.asList("a\r\nb"), texts("a\r\nb\r\n", LineDiff.changedRegions("", "a\r\nb\r\n")));
+    }
+
+    @Test
+    public void testRemovedLines() {
+
+        final String current = "a\nc\nd";
+        assertEquals(Arrays.asList("c"), texts(current, LineDiff.changedRegions("a\nb\nc\nd", current)));
+        assertEquals(Arrays.asList("c"), texts("a\nc", LineDiff.changedRegions("a\nc\nd", "a\nc")));
+    }
+
+    @Test
+    public void testScatteredChanges() {
+
+        final StringBuilder base = new StringBuilder();
+        final StringBuilder current = new StringBuilder();
+        for (int i = 0; i < 10000; ++i) {
+            base.append("line ").append(i).append('\n');
+            current.append("line ").append(i % 1000 == 500 ? "changed" : String.valueOf(i)).append('\n');
+        }
+        final IRegion[] regions = LineDiff.changedRegions(base.toString(), current.toString());
+        assertEquals(10, regions.length);
+        for (final String text : texts(current.toString(), regions)) {
+            assertEquals("line changed", text);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.plexus.build.incremental.BuildContext;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import net.trajano.mojo.m2ecodestyle.internal.PreferenceStore;
+
+public class PreferenceStoreTest {
+
+    private final BuildContext buildContext = new DefaultBuildContext();
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+
+        dir = File.createTempFile("settings", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testFlushOnlyChanged() throws Exception {
+
+        FileUtils.fileWrite(new File(dir, "a.prefs"), "x=1\n");
+
+        final PreferenceStore store = new PreferenceStore(dir);
+        store.get("a.prefs").setProperty("y", "2");
+        store.get("a.prefs").setProperty("z", "3");
+        store.get("b.prefs");
+        store.get("c.prefs").setProperty("x", "1");
+        assertEquals(Arrays.asList("a.prefs", "c.prefs"), store.flush(buildContext));
+        assertFalse("empty prefs file is not created", new File(dir, "b.prefs").exists());
+        assertTrue(FileUtils.fileRead(new File(dir, "a.prefs")).contains("z=3"));
+        assertEquals(Collections.emptyList(), store.flush(buildContext));
+
+        final PreferenceStore reloaded = new PreferenceStore(dir);
+        reloaded.get("a.prefs").setProperty("x", "1");
+        reloaded.get("c.prefs");
+        assertEquals(Collections.emptyList(), reloaded.flush(buildContext));
+    }
+}
@@ -0,0 +1,44 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.internal.PreferencesWriter;
+
+public class PreferencesWriterTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        final Properties props = new Properties();
+        props.setProperty("b key", " leading space");
+        props.setProperty("a=b:c", "#!\\\t\r\n\f\u00e9\u20ac");
+        props.setProperty("eclipse.preferences.version", "1");
+
+        final byte[] content = PreferencesWriter.format(props);
+        final Properties read = new Properties();
+        read.load(new ByteArrayInputStream(content));
+        assertEquals(props, read);
+
+        final Properties reordered = new Properties();
+        reordered.setProperty("eclipse.preferences.version", "1");
+        reordered.setProperty("a=b:c", "#!\\\t\r\n\f\u00e9\u20ac");
+        reordered.setProperty("b key", " leading space");
+        assertArrayEquals(content, PreferencesWriter.format(reordered));
+    }
+
+    @Test
+    public void testSortedWithoutTimestamp() {
+
+        final Properties props = new Properties();
+        props.setProperty("z", "1");
+        props.setProperty("a", "2");
+        assertEquals("#Generated by m2e codestyle maven plugin\na=2\nz=1\n", new String(PreferencesWriter.format(props), StandardCharsets.ISO_8859_1));
+    }
+}
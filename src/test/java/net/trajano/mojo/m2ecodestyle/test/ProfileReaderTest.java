@@ -0,0 +1,64 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.internal.ProfileReader;
+
+public class ProfileReaderTest {
+
+    private static Properties read(final String profileName) throws IOException {
+
+        final Properties props = new Properties();
+        try (final InputStream xmlStream = ProfileReaderTest.class.getResourceAsStream("/formatter/java-code-formatter.xml")) {
+            ProfileReader.read(xmlStream, profileName, props);
+        }
+        return props;
+    }
+
+    @Test
+    public void testFirstProfile() throws Exception {
+
+        final Properties props = read(null);
+        assertEquals(read("Trajano (Java)"), props);
+        assertEquals("160", props.get("org.eclipse.jdt.core.formatter.lineSplit"));
+    }
+
+    @Test
+    public void testMissingAttributes() throws Exception {
+
+        final String xml = "<?xml version=\"1.0\"?><profiles><profile name=\"a\"><setting id=\"x\"/><setting value=\"y\"/></profile></profiles>";
+        final Properties props = new Properties();
+        ProfileReader.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), null, props);
+        assertEquals(1, props.size());
+        assertEquals("", props.get("x"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingProfile() throws Exception {
+
+        read("missing");
+    }
+
+    @Test
+    public void testNamedProfile() throws Exception {
+
+        final Properties props = read("Unmanaged profile 'trajano-2.0.2-SNAPSHOT'x");
+        assertEquals(read(null).size(), props.size());
+        assertEquals("800", props.get("org.eclipse.jdt.core.formatter.lineSplit"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsDoctype() throws Exception {
+
+        final String xml = "<?xml version=\"1.0\"?><!DOCTYPE profiles [<!ENTITY e SYSTEM \"file:///etc/passwd\">]><profiles><profile name=\"a\"><setting id=\"x\" value=\"&e;\"/></profile></profiles>";
+        ProfileReader.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), null, new Properties());
+    }
+}
@@ -0,0 +1,137 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import net.trajano.mojo.m2ecodestyle.internal.RemoteCache;
+
+/**
+ * Tests {@link RemoteCache} against a local HTTP stub.
+ */
+public class RemoteCacheTest {
+
+    private static final String CONTENT = "org.eclipse.jdt.core.formatter.lineSplit=160\n";
+
+    private static String read(final InputStream is) throws IOException {
+
+        try (final Scanner scanner = new Scanner(is, "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    private File dir;
+
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private HttpServer server;
+
+    private final AtomicBoolean unavailable = new AtomicBoolean();
+
+    private URI uri(final String path) {
+
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+
+        dir = File.createTempFile("cache", "");
+        dir.delete();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            if (unavailable.get()) {
+                exchange.sendResponseHeaders(503, -1);
+            } else if (!"/org.eclipse.jdt.core.prefs".equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                final byte[] content = CONTENT.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, content.length);
+                try (final OutputStream os = exchange.getResponseBody()) {
+                    os.write(content);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+
+        server.stop(0);
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testNotFound() throws IOException {
+
+        assertNull(new RemoteCache(dir, 60000, false, 5000).open(uri("/missing.prefs")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testOfflineNotCached() throws IOException {
+
+        new RemoteCache(dir, 60000, true, 5000).open(uri("/org.eclipse.jdt.core.prefs"));
+    }
+
+    @Test
+    public void testRevalidate() throws IOException {
+
+        final URI uri = uri("/org.eclipse.jdt.core.prefs");
+        final RemoteCache cache = new RemoteCache(dir, 0, false, 5000);
+        assertEquals(CONTENT, read(cache.open(uri)));
+        assertEquals(CONTENT, read(cache.open(uri)));
+        assertEquals(2, requests.get());
+        assertEquals(1, notModified.get());
+    }
+
+    @Test
+    public void testServedFromCache() throws IOException {
+
+        final URI uri = uri("/org.eclipse.jdt.core.prefs");
+        assertEquals(CONTENT, read(new RemoteCache(dir, 60000, false, 5000).open(uri)));
+        assertEquals(CONTENT, read(new RemoteCache(dir, 60000, false, 5000).open(uri)));
+        assertEquals(1, requests.get());
+
+        server.stop(0);
+        assertEquals(CONTENT, read(new RemoteCache(dir, 60000, true, 5000).open(uri)));
+        assertEquals("stale copy is used when the server is down", CONTENT, read(new RemoteCache(dir, 0, false, 5000).open(uri)));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testServerError() throws IOException {
+
+        final URI uri = uri("/org.eclipse.jdt.core.prefs");
+        assertEquals(CONTENT, read(new RemoteCache(dir, 0, false, 5000).open(uri)));
+
+        unavailable.set(true);
+        assertEquals("stale copy is used when the server fails", CONTENT, read(new RemoteCache(dir, 0, false, 5000).open(uri)));
+        assertEquals(2, requests.get());
+    }
+}
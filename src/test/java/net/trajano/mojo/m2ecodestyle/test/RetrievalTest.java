@@ -1,8 +1,15 @@
 package net.trajano.mojo.m2ecodestyle.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
@@ -10,6 +17,17 @@ import net.trajano.mojo.m2ecodestyle.internal.DefaultRetrieval;
 
 public class RetrievalTest {
 
+    @Test
+    public void testFetchPreferences() throws Exception {
+
+        final List<String> prefsFiles = Arrays.asList("org.eclipse.jdt.ui.prefs", "missing.prefs", "org.eclipse.jdt.core.prefs");
+        final Map<String, Future<byte[]>> fetched = new DefaultRetrieval().fetchPreferences(URI.create("codestyle/"), prefsFiles);
+        assertEquals(prefsFiles, Arrays.asList(fetched.keySet().toArray()));
+        assertNotNull(fetched.get("org.eclipse.jdt.ui.prefs").get());
+        assertNull(fetched.get("missing.prefs").get());
+        assertNotNull(fetched.get("org.eclipse.jdt.core.prefs").get());
+    }
+
     @Test
     public void testFileNotFound() throws IOException {
 
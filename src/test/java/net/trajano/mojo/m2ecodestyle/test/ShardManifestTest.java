@@ -0,0 +1,46 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.internal.ShardManifest;
+
+public class ShardManifestTest {
+
+    @Test
+    public void testReadWrite() throws Exception {
+
+        final File file = File.createTempFile("shard", ".json");
+        try {
+            new ShardManifest("g:a", 1, 2, 3, false, Arrays.asList("src/A.java", "src/\"B\"\\C.java"), Collections.singletonList("src/D.java: bad\nthing")).write(file);
+            final ShardManifest manifest = ShardManifest.read(file);
+            assertEquals("g:a", manifest.getProject());
+            assertEquals(1, manifest.getShardIndex());
+            assertEquals(2, manifest.getShardCount());
+            assertEquals(3, manifest.getScanned());
+            assertFalse(manifest.isPassed());
+            assertEquals(Arrays.asList("src/A.java", "src/\"B\"\\C.java"), manifest.getChanged());
+            assertEquals(Collections.singletonList("src/D.java: bad\nthing"), manifest.getFailures());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testShardOf() {
+
+        for (final String path : Arrays.asList("src/main/java/A.java", "src/test/java/B.java", "x")) {
+            final int shard = ShardManifest.shardOf(path, 3);
+            assertTrue(shard >= 0 && shard < 3);
+            assertEquals(shard, ShardManifest.shardOf(path, 3));
+        }
+        assertEquals(0, ShardManifest.shardOf("anything", 1));
+    }
+}
@@ -0,0 +1,54 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import java.util.Map;
+
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * Stands in for the JSDT tool factory so the reflective JavaScript formatter
+ * can be tested without JSDT. It has the same static factory method as
+ * <code>org.eclipse.wst.jsdt.core.ToolFactory</code> and the code formatter it
+ * creates removes the trailing spaces of each line.
+ */
+public final class StubJavaScriptToolFactory {
+
+    public static final class StubCodeFormatter {
+
+        public TextEdit format(final int kind,
+            final String source,
+            final int offset,
+            final int length,
+            final int indentationLevel,
+            final String lineSeparator) {
+
+            if ((kind & 0xff) != 0x08) {
+                throw new IllegalArgumentException("not a JavaScript unit " + kind);
+            }
+            final MultiTextEdit edit = new MultiTextEdit();
+            int spaces = -1;
+            for (int i = offset; i < offset + length; ++i) {
+                final char c = source.charAt(i);
+                if (c == ' ') {
+                    spaces = spaces < 0 ? i : spaces;
+                } else {
+                    if ((c == '\n' || c == '\r') && spaces >= 0) {
+                        edit.addChild(new ReplaceEdit(spaces, i - spaces, ""));
+                    }
+                    spaces = -1;
+                }
+            }
+            return edit;
+        }
+    }
+
+    public static StubCodeFormatter createCodeFormatter(@SuppressWarnings("rawtypes") final Map options) {
+
+        return new StubCodeFormatter();
+    }
+
+    private StubJavaScriptToolFactory() {
+
+    }
+}
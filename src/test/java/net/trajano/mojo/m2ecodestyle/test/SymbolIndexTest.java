@@ -0,0 +1,44 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.internal.SymbolIndex;
+
+public class SymbolIndexTest {
+
+    @Test
+    public void testLookup() throws Exception {
+
+        final File temp = File.createTempFile("symbols", "");
+        temp.delete();
+        final File sourceRoot = new File(temp, "src");
+        final File directory = new File(temp, "index");
+        new File(sourceRoot, "a/b").mkdirs();
+        try {
+            FileUtils.fileWrite(new File(sourceRoot, "a/b/Before.java"), "package a.b;\npublic class Before {}\n");
+            final File junit = new File(Before.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            final SymbolIndex index = SymbolIndex.create(new Object(), Collections.singleton(sourceRoot), Collections.singleton(junit), directory);
+            assertEquals(new TreeSet<>(Arrays.asList("a.b.Before", "org.junit.Before")), index.lookup("Before"));
+            assertEquals(Collections.singleton("java.util.ArrayList"), index.lookup("ArrayList"));
+            assertTrue(index.lookup("List").contains("java.util.List"));
+            assertTrue(index.lookup("Unsafe").isEmpty());
+            assertTrue(index.lookup("Nope").isEmpty());
+            assertEquals(2, directory.list().length);
+
+            final SymbolIndex reused = SymbolIndex.create(new Object(), Collections.<File> emptySet(), Collections.singleton(junit), directory);
+            assertEquals(Collections.singleton("org.junit.Before"), reused.lookup("Before"));
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net.trajano.mojo.m2ecodestyle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.maven.plugin.testing.MojoRule;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+
+import net.trajano.mojo.m2ecodestyle.WatchMojo;
+
+public class WatchMojoTest {
+
+    @Rule
+    public MojoRule rule = new MojoRule();
+
+    @Test
+    public void testFormatOnChange() throws Exception {
+
+        final File temp = File.createTempFile("tmp", "");
+        temp.delete();
+        temp.mkdir();
+        try {
+            FileUtils.copyDirectoryStructure(new File("src/it/javaconvention"), temp);
+            FileUtils.copyFile(new File("src/test/resources/formatter/pom.xml"), new File(temp, "pom.xml"));
+            final String badContent = FileUtils.fileRead("src/test/resources/BadlyFormatted.java");
+            final File formattedFile = new File(temp, "src/main/java/Formatted.java");
+            FileUtils.fileWrite(formattedFile, badContent);
+
+            final WatchMojo mojo = (WatchMojo) rule.lookupConfiguredMojo(temp, "watch");
+            final AtomicReference<Exception> failure = new AtomicReference<>();
+            final Thread watcher = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        mojo.execute();
+                    } catch (final Exception e) {
+                        failure.set(e);
+                    }
+                }
+            });
+            watcher.start();
+
+            // the initial format is done before watching
+            final long deadline = System.currentTimeMillis() + 30000;
+            while (badContent.equals(FileUtils.fileRead(formattedFile)) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            final String formattedContent = FileUtils.fileRead(formattedFile);
+            assertFalse(badContent.equals(formattedContent));
+
+            final File newFile = new File(temp, "src/main/java/newpackage/Bad.java");
+            newFile.getParentFile().mkdirs();
+            FileUtils.fileWrite(newFile, badContent);
+            for (int i = 1; !formattedContent.equals(FileUtils.fileRead(newFile)) && System.currentTimeMillis() < deadline; ++i) {
+                if (i % 40 == 0) {
+                    // written again in case the watch was not registered yet
+                    FileUtils.fileWrite(newFile, badContent);
+                }
+                Thread.sleep(50);
+            }
+
+            watcher.interrupt();
+            watcher.join(10000);
+            assertFalse(watcher.isAlive());
+            assertEquals(null, failure.get());
+            assertEquals(formattedContent, FileUtils.fileRead(newFile));
+
+            // files formatted while watching are kept in the format cache
+            final Properties cache = new Properties();
+            try (final InputStream is = new FileInputStream(new File(temp, "target/m2e-codestyle/format.cache"))) {
+                cache.load(is);
+            }
+            assertTrue(cache.containsKey(newFile.getAbsolutePath()));
+        } finally {
+            FileUtils.deleteDirectory(temp);
+        }
+    }
+}